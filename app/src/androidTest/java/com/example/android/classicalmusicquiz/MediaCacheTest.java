@@ -0,0 +1,179 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays samples through the MediaCache from a local stand-in for the media host.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaCacheTest {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private ServerSocket mServerSocket;
+    private Thread mServerThread;
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private File mCacheDir;
+    private final List<MediaCache> mCaches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheDir = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "media-cache-test-" + System.nanoTime());
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        mServerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        mServerThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServerSocket.close();
+        mServerThread.join();
+        for (MediaCache cache : mCaches) {
+            cache.release();
+        }
+        mCaches.clear();
+        deleteRecursively(mCacheDir);
+    }
+
+    private MediaCache newCache(long maxBytes) {
+        MediaCache cache = new MediaCache(mCacheDir, maxBytes);
+        mCaches.add(cache);
+        return cache;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void repeatPlayIsServedFromDisk() throws Exception {
+        MediaCache cache = newCache(1024 * 1024);
+        DataSource.Factory factory = cache.wrap(new DefaultHttpDataSourceFactory("test"));
+        Uri uri = sampleUri("sample.mp3");
+
+        assertEquals(SAMPLE_BYTES, readFully(factory, uri));
+        assertEquals(1, mRequests.get());
+        assertEquals(1, cache.getMisses());
+
+        assertEquals(SAMPLE_BYTES, readFully(factory, uri));
+        assertEquals(1, mRequests.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(SAMPLE_BYTES, cache.getBytesFromUpstream());
+    }
+
+    @Test
+    public void leastRecentlyUsedSampleIsEvictedOverBudget() throws Exception {
+        MediaCache cache = newCache(SAMPLE_BYTES * 3 / 2);
+        DataSource.Factory factory = cache.wrap(new DefaultHttpDataSourceFactory("test"));
+
+        readFully(factory, sampleUri("first.mp3"));
+        readFully(factory, sampleUri("second.mp3"));
+
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getCacheSpace() <= SAMPLE_BYTES * 3 / 2);
+    }
+
+    private Uri sampleUri(String name) {
+        return Uri.parse("http://127.0.0.1:" + mServerSocket.getLocalPort() + "/" + name);
+    }
+
+    private static int readFully(DataSource.Factory factory, Uri uri) throws IOException {
+        DataSource dataSource = factory.createDataSource();
+        byte[] buffer = new byte[4096];
+        int total = 0;
+        try {
+            dataSource.open(new DataSpec(uri));
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                total += read;
+            }
+        } finally {
+            dataSource.close();
+        }
+        return total;
+    }
+
+    /**
+     * Answers every request with SAMPLE_BYTES bytes until the server socket is closed.
+     */
+    private void serve() {
+        byte[] body = new byte[SAMPLE_BYTES];
+        while (!mServerSocket.isClosed()) {
+            try {
+                Socket socket = mServerSocket.accept();
+                try {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        // Skip the request headers.
+                    }
+                    mRequests.incrementAndGet();
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + SAMPLE_BYTES
+                            + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+                    out.write(body);
+                    out.flush();
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // The server socket was closed.
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory-bounded cache of composer portraits, keyed by albumArtID. Portraits are decoded at the
+ * smallest power-of-two sample size that still covers the player view, and bitmaps evicted from
+ * the cache are recycled into later decodes through {@link BitmapFactory.Options#inBitmap}.
+ * Portraits put on screen are acquired and released, so that an evicted bitmap is only recycled
+ * once nothing shows it any more.
+ */
+class ArtworkCache {
+
+    static final String PLACEHOLDER_ID = "question_mark";
+
+    // Use an eighth of the available heap for portraits.
+    private static final int MEMORY_FRACTION = 8;
+
+    private static ArtworkCache sInstance;
+
+    private final Context mContext;
+    private final Resources mResources;
+    private final LruCache<String, Bitmap> mCache;
+    // Guarded by mReusableBitmaps, like the two below.
+    private final Set<SoftReference<Bitmap>> mReusableBitmaps = new HashSet<>();
+    private final Map<Bitmap, Integer> mAcquireCounts = new IdentityHashMap<>();
+    private final Set<Bitmap> mEvictedInUse = Collections.newSetFromMap(
+            new IdentityHashMap<Bitmap, Boolean>());
+    private int mTargetWidth;
+    private int mTargetHeight;
+
+
+    private ArtworkCache(Context context) {
+        mContext = context;
+        mResources = context.getResources();
+        mTargetWidth = mResources.getDisplayMetrics().widthPixels;
+        mTargetHeight = mResources.getDisplayMetrics().heightPixels;
+
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_FRACTION);
+        mCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return Math.max(1, bitmap.getRowBytes() * bitmap.getHeight() / 1024);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                                        Bitmap newValue) {
+                if (evicted && oldValue.isMutable()) {
+                    synchronized (mReusableBitmaps) {
+                        if (mAcquireCounts.containsKey(oldValue)) {
+                            mEvictedInUse.add(oldValue);
+                        } else {
+                            mReusableBitmaps.add(new SoftReference<>(oldValue));
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets the process-wide artwork cache.
+     * @param context The application context.
+     * @return The cache.
+     */
+    static synchronized ArtworkCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArtworkCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops every cached portrait, e.g. when a new content pack replaces them. Portraits still on
+     * screen are only reused once they are released.
+     */
+    void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Sets the size of the view the portraits are shown in. Portraits are decoded at the smallest
+     * resolution that still covers it.
+     * @param width The width of the view in pixels.
+     * @param height The height of the view in pixels.
+     */
+    synchronized void setTargetSize(int width, int height) {
+        if (width > 0 && height > 0) {
+            mTargetWidth = width;
+            mTargetHeight = height;
+        }
+    }
+
+    /**
+     * Acquires the question mark shown until the user answers.
+     * @return The placeholder Bitmap. Pass it to {@link #release(Bitmap)} once it isn't shown.
+     */
+    Bitmap acquirePlaceholder() {
+        return getArt(PLACEHOLDER_ID, R.drawable.question_mark, true);
+    }
+
+    /**
+     * Gets the portrait of the composer for a sample into the cache, without acquiring it. Use
+     * {@link #acquireArtForSample(Context, Sample)} to show it.
+     * @param context The application context.
+     * @param sample The sample, or null.
+     * @return The portrait Bitmap, or null if the sample or its portrait doesn't exist.
+     */
+    Bitmap getArtForSample(Context context, Sample sample) {
+        return getArtForSample(context, sample, false);
+    }
+
+    /**
+     * Acquires the portrait of the composer for a sample, to show it.
+     * @param context The application context.
+     * @param sample The sample, or null.
+     * @return The portrait Bitmap, or null if the sample or its portrait doesn't exist. Pass it to
+     * {@link #release(Bitmap)} once it isn't shown.
+     */
+    Bitmap acquireArtForSample(Context context, Sample sample) {
+        return getArtForSample(context, sample, true);
+    }
+
+    private Bitmap getArtForSample(Context context, Sample sample, boolean acquire) {
+        if (sample == null) {
+            return null;
+        }
+        int sampleID = sample.getSampleID();
+        int position = SampleCatalog.getInstance(context).indexOf(sampleID);
+        return getArt(sample.getAlbumArtID(), getResID(position, sampleID), acquire);
+    }
+
+    /**
+     * Releases a portrait acquired to be shown. If it was evicted while it was shown, its memory
+     * can now be reused.
+     * @param bitmap The portrait, or null.
+     */
+    void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        synchronized (mReusableBitmaps) {
+            Integer count = mAcquireCounts.remove(bitmap);
+            if (count != null && count > 1) {
+                mAcquireCounts.put(bitmap, count - 1);
+            } else if (mEvictedInUse.remove(bitmap)) {
+                mReusableBitmaps.add(new SoftReference<>(bitmap));
+            }
+        }
+    }
+
+    /**
+     * Looks up the portrait drawable of a sample in the {@link ArtTable} generated by the build.
+     * @param position The position of the sample in the catalog.
+     * @param sampleID The sample ID, to check the table was built from the loaded catalog.
+     * @return The drawable resource ID, or 0 if the sample has no portrait in the table, as is
+     * the case for the samples of a side-loaded {@link ContentPack}.
+     */
+    static int getResID(int position, int sampleID) {
+        if (position < 0 || position >= ArtTable.SAMPLE_IDS.length
+                || ArtTable.SAMPLE_IDS[position] != sampleID) {
+            return 0;
+        }
+        return ArtTable.RES_IDS[position];
+    }
+
+    /**
+     * Gets a portrait from the cache, decoding it on a miss. An acquired portrait is counted
+     * before anything can evict it, so its memory is never handed to another decode while it's
+     * shown.
+     * @param albumArtID The name of the portrait.
+     * @param resID The drawable of the portrait, or 0 if it's only in the content pack.
+     * @param acquire true to acquire the portrait for display.
+     * @return The portrait Bitmap, or null if there is no such portrait.
+     */
+    private Bitmap getArt(String albumArtID, int resID, boolean acquire) {
+        if (albumArtID == null) {
+            return null;
+        }
+        Bitmap bitmap;
+        synchronized (mReusableBitmaps) {
+            bitmap = mCache.get(albumArtID);
+            if (bitmap != null && acquire) {
+                acquire(bitmap);
+            }
+        }
+        if (bitmap == null) {
+            bitmap = decode(albumArtID, resID);
+            if (bitmap != null) {
+                if (acquire) {
+                    synchronized (mReusableBitmaps) {
+                        acquire(bitmap);
+                    }
+                }
+                mCache.put(albumArtID, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private void acquire(Bitmap bitmap) {
+        Integer count = mAcquireCounts.get(bitmap);
+        mAcquireCounts.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Decodes a portrait, downsampled to the target size. Portraits in the active
+     * {@link ContentPack} take precedence over the drawables.
+     */
+    private Bitmap decode(String albumArtID, int resID) {
+        ContentPack pack = ContentPack.acquire(mContext);
+        try {
+            return decode(pack, albumArtID, resID);
+        } finally {
+            if (pack != null) {
+                pack.release();
+            }
+        }
+    }
+
+    private Bitmap decode(ContentPack pack, String albumArtID, int resID) {
+        ContentPack.Entry entry = pack != null
+                ? pack.getEntry(albumArtID, ContentPack.TYPE_ART) : null;
+        if (entry == null && resID == 0) {
+            return null;
+        }
+
+        // Skip density scaling, the player view scales the artwork itself.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inJustDecodeBounds = true;
+        decode(pack, entry, resID, options);
+
+        synchronized (this) {
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                    mTargetWidth, mTargetHeight);
+        }
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = takeReusableBitmap(options);
+
+        try {
+            return decode(pack, entry, resID, options);
+        } catch (IllegalArgumentException e) {
+            // The candidate couldn't be reused after all, decode into fresh memory.
+            options.inBitmap = null;
+            return decode(pack, entry, resID, options);
+        }
+    }
+
+    /**
+     * Decodes a portrait from its pack entry if it has one, otherwise from its drawable.
+     */
+    private Bitmap decode(ContentPack pack, ContentPack.Entry entry, int resID,
+                          BitmapFactory.Options options) {
+        if (entry == null) {
+            return BitmapFactory.decodeResource(mResources, resID, options);
+        }
+        InputStream inputStream = pack.openStream(entry);
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // Nothing was held open.
+            }
+        }
+    }
+
+    /**
+     * Gets the largest power-of-two sample size that keeps both dimensions at or above the target.
+     */
+    private static int calculateInSampleSize(int width, int height, int targetWidth,
+                                             int targetHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetWidth
+                && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Removes and returns an evicted bitmap that a decode with the given options can write into.
+     */
+    private Bitmap takeReusableBitmap(BitmapFactory.Options options) {
+        synchronized (mReusableBitmaps) {
+            Iterator<SoftReference<Bitmap>> iterator = mReusableBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap candidate = iterator.next().get();
+                if (candidate == null || !candidate.isMutable()) {
+                    iterator.remove();
+                } else if (canReuse(candidate, options)) {
+                    iterator.remove();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean canReuse(Bitmap candidate, BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return canReuseKitKat(candidate, options);
+        }
+        // Before KitKat the bitmap has to match exactly, and downsampled decodes can't reuse.
+        return candidate.getWidth() == options.outWidth
+                && candidate.getHeight() == options.outHeight
+                && options.inSampleSize == 1;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static boolean canReuseKitKat(Bitmap candidate, BitmapFactory.Options options) {
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        return width * height * 4 <= candidate.getAllocationByteCount();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.widget.Toast;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the catalogs, audio assets and composer art shipped with the app. The manifest is
+ * normally generated by the build; if it is missing, the asset root is scanned once and the
+ * result is persisted until the app is updated.
+ */
+class AssetManifest {
+
+    static final String ASSET_NAME = "assets.manifest";
+    static final String JSON_SUFFIX = ".exolist.json";
+
+    private static final String CACHE_FILE_NAME = "assets.manifest";
+    private static final String STAMP = "stamp";
+    private static final String CATALOG = "catalog";
+    private static final String AUDIO = "audio";
+    private static final String ART = "art";
+
+    private static AssetManifest sInstance;
+
+    private final List<CatalogEntry> mCatalogs = new ArrayList<>();
+    private final Set<String> mAudio = new HashSet<>();
+    private final Set<String> mArt = new HashSet<>();
+
+
+    /**
+     * Gets the manifest, resolving it if this is the first use since launch.
+     * @param context The application context.
+     * @return The manifest.
+     */
+    static synchronized AssetManifest getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = load(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Reads the manifest generated by the build, then the one persisted by an earlier launch,
+     * and only scans the assets if neither is usable.
+     * @param context The application context.
+     * @return The manifest.
+     */
+    private static AssetManifest load(Context context) {
+        AssetManifest manifest = new AssetManifest();
+        try {
+            manifest.read(context.getAssets().open(ASSET_NAME), null);
+            manifest.sortCatalogs();
+            return manifest;
+        } catch (IOException e) {
+            // No manifest in the APK, fall through to the persisted one.
+        }
+
+        String stamp = String.valueOf(getInstallStamp(context));
+        File cacheFile = new File(context.getFilesDir(), CACHE_FILE_NAME);
+        if (cacheFile.exists()) {
+            manifest = new AssetManifest();
+            try {
+                if (manifest.read(new FileInputStream(cacheFile), stamp)) {
+                    manifest.sortCatalogs();
+                    return manifest;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        manifest = new AssetManifest();
+        try {
+            manifest.scan(context);
+            manifest.write(cacheFile, stamp);
+        } catch (IOException e) {
+            Toast.makeText(context, R.string.sample_list_load_error, Toast.LENGTH_LONG)
+                    .show();
+        }
+        manifest.sortCatalogs();
+        return manifest;
+    }
+
+    /**
+     * @return A value that changes every time the app is installed or updated.
+     */
+    private static long getInstallStamp(Context context) {
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses a manifest.
+     * @param inputStream The manifest contents. The stream is closed.
+     * @param expectedStamp The stamp the manifest must carry, or null to accept any.
+     * @return true if the manifest was read, false if its stamp didn't match.
+     * @throws IOException If reading fails.
+     */
+    private boolean read(InputStream inputStream, String expectedStamp) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            boolean stampMatched = expectedStamp == null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < (CATALOG.equals(fields[0]) ? 3 : 2)) {
+                    continue;
+                }
+                switch (fields[0]) {
+                    case STAMP:
+                        stampMatched = stampMatched || fields[1].equals(expectedStamp);
+                        break;
+                    case CATALOG:
+                        mCatalogs.add(new CatalogEntry(fields[2], Integer.parseInt(fields[1])));
+                        break;
+                    case AUDIO:
+                        mAudio.add(fields[1]);
+                        break;
+                    case ART:
+                        mArt.add(fields[1]);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return stampMatched;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Builds the manifest from a single listing of the asset root. Art lives in the drawable
+     * resources, which can't be listed, so a scanned manifest has no art entries.
+     */
+    private void scan(Context context) throws IOException {
+        for (String asset : context.getAssets().list("")) {
+            if (asset.endsWith(JSON_SUFFIX)) {
+                addCatalog(asset.substring(0, asset.length() - JSON_SUFFIX.length()));
+            } else if (asset.endsWith(BinaryCatalog.SUFFIX)) {
+                addCatalog(asset.substring(0, asset.length() - BinaryCatalog.SUFFIX.length()));
+            } else if (asset.endsWith(".mp3")) {
+                mAudio.add(asset);
+            }
+        }
+    }
+
+    private void addCatalog(String name) {
+        for (CatalogEntry entry : mCatalogs) {
+            if (entry.mName.equals(name)) {
+                return;
+            }
+        }
+        mCatalogs.add(new CatalogEntry(name, 0));
+    }
+
+    private void write(File file, String stamp) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(STAMP + "\t" + stamp + "\n");
+            for (CatalogEntry entry : mCatalogs) {
+                writer.write(CATALOG + "\t" + entry.mPriority + "\t" + entry.mName + "\n");
+            }
+            for (String audio : mAudio) {
+                writer.write(AUDIO + "\t" + audio + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void sortCatalogs() {
+        Collections.sort(mCatalogs, new Comparator<CatalogEntry>() {
+            @Override
+            public int compare(CatalogEntry a, CatalogEntry b) {
+                if (a.mPriority != b.mPriority) {
+                    return a.mPriority < b.mPriority ? -1 : 1;
+                }
+                return a.mName.compareTo(b.mName);
+            }
+        });
+    }
+
+    /**
+     * Gets the catalogs to merge, lowest priority first.
+     * @return The catalog names, without their format suffix.
+     */
+    List<String> getCatalogs() {
+        List<String> names = new ArrayList<>(mCatalogs.size());
+        for (CatalogEntry entry : mCatalogs) {
+            names.add(entry.mName);
+        }
+        return names;
+    }
+
+    /**
+     * @param fileName The file name of an audio asset.
+     * @return true if the asset ships with the app.
+     */
+    boolean hasAudio(String fileName) {
+        return mAudio.contains(fileName);
+    }
+
+    /**
+     * @param albumArtID The drawable name of a composer portrait.
+     * @return true if the portrait ships with the app. Always true for scanned manifests,
+     * which can't see the drawables.
+     */
+    boolean hasArt(String albumArtID) {
+        return mArt.isEmpty() || mArt.contains(albumArtID);
+    }
+
+    private static class CatalogEntry {
+        final String mName;
+        final int mPriority;
+
+        CatalogEntry(String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+    }
+}
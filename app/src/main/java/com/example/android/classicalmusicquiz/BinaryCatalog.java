@@ -0,0 +1,218 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.res.AssetManager;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Reader for the binary catalog that the build compiles from media.exolist.json (see
+ * CatalogCompiler in buildSrc for the layout). The asset is memory-mapped straight out of the
+ * APK, so opening it costs no parsing and no copying; strings are only decoded when a sample is
+ * actually read. Opening does make one pass over the catalog to check it against the CRC32 in
+ * its header, so a damaged catalog is rejected and its JSON form is read instead.
+ */
+class BinaryCatalog implements CatalogSource {
+
+    static final String SUFFIX = ".exolist.bin";
+
+    private static final int MAGIC = 0x434D5143;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 40;
+    private static final int RECORD_SIZE = 36;
+    private static final int CHECKSUM_CHUNK_SIZE = 8192;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mRecordsOffset;
+    private final int mComposersOffset;
+    private final int mArtOffset;
+    private final int mPoolOffset;
+    private final String[] mComposers;
+    private final String[] mArt;
+
+
+    private BinaryCatalog(ByteBuffer buffer) throws IOException {
+        Header header = readHeader(buffer);
+        if (checksum(buffer) != header.checksum) {
+            throw new IOException("Sample catalog checksum mismatch");
+        }
+        mBuffer = buffer;
+        mCount = header.count;
+        mComposers = new String[buffer.getInt(20)];
+        mArt = new String[buffer.getInt(24)];
+        mRecordsOffset = buffer.getInt(28);
+        mComposersOffset = mRecordsOffset + mCount * RECORD_SIZE;
+        mArtOffset = mComposersOffset + mComposers.length * 4;
+        mPoolOffset = buffer.getInt(32);
+    }
+
+    /**
+     * The metadata at the start of a binary catalog.
+     */
+    static class Header {
+        final int count;
+        final int uniqueCount;
+        final int checksum;
+
+        Header(int count, int uniqueCount, int checksum) {
+            this.count = count;
+            this.uniqueCount = uniqueCount;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Reads only the metadata of a binary catalog, in constant time whatever its size.
+     * @param assetManager The AssetManager of the application.
+     * @param assetName The name of the catalog asset.
+     * @return The catalog metadata.
+     * @throws IOException If the asset is missing or not a valid catalog.
+     */
+    static Header readHeader(AssetManager assetManager, String assetName) throws IOException {
+        DataInputStream in = new DataInputStream(MappedAssets.open(assetManager, assetName));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary sample catalog");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported catalog version " + version);
+            }
+            return new Header(in.readInt(), in.readInt(), in.readInt());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the metadata of a binary catalog that is already in memory.
+     * @param buffer The catalog.
+     * @return The catalog metadata.
+     * @throws IOException If the buffer is not a valid catalog.
+     */
+    static Header readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary sample catalog");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported catalog version " + version);
+        }
+        return new Header(buffer.getInt(8), buffer.getInt(12), buffer.getInt(16));
+    }
+
+    /**
+     * Computes the CRC32 of everything after the header, as CatalogCompiler does.
+     */
+    private static int checksum(ByteBuffer buffer) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE);
+        body.limit(buffer.capacity());
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK_SIZE, body.remaining())];
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Maps a binary catalog asset. The asset must be stored uncompressed in the APK.
+     * @param assetManager The AssetManager of the application.
+     * @param assetName The name of the catalog asset.
+     * @return The opened catalog.
+     * @throws IOException If the asset is missing, compressed, not a valid catalog or damaged.
+     */
+    static BinaryCatalog open(AssetManager assetManager, String assetName) throws IOException {
+        return new BinaryCatalog(MappedAssets.map(assetManager, assetName));
+    }
+
+    /**
+     * Opens a binary catalog that is already in memory, such as one mapped from a
+     * {@link ContentPack}.
+     * @param buffer The catalog.
+     * @return The opened catalog.
+     * @throws IOException If the buffer is not a valid catalog or is damaged.
+     */
+    static BinaryCatalog open(ByteBuffer buffer) throws IOException {
+        return new BinaryCatalog(buffer);
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    @Override
+    public int getSampleID(int position) {
+        return mBuffer.getInt(mRecordsOffset + position * RECORD_SIZE);
+    }
+
+    @Override
+    public Sample readSample(int position) {
+        int record = mRecordsOffset + position * RECORD_SIZE;
+        Sample sample = new Sample(
+                mBuffer.getInt(record),
+                tableString(mComposers, mComposersOffset, mBuffer.getInt(record + 12)),
+                poolString(mBuffer.getInt(record + 4)),
+                poolString(mBuffer.getInt(record + 8)),
+                tableString(mArt, mArtOffset, mBuffer.getInt(record + 16)));
+        sample.setExcerpt(mBuffer.getInt(record + 20), mBuffer.getInt(record + 24),
+                mBuffer.getInt(record + 28));
+        sample.setSeekIndex(poolString(mBuffer.getInt(record + 32)));
+        return sample;
+    }
+
+    /**
+     * Gets a string from one of the interned tables, decoding it on first use.
+     */
+    private String tableString(String[] cache, int tableOffset, int index) {
+        if (index < 0) {
+            return null;
+        }
+        synchronized (cache) {
+            if (cache[index] == null) {
+                cache[index] = poolString(mBuffer.getInt(tableOffset + index * 4));
+            }
+            return cache[index];
+        }
+    }
+
+    /**
+     * Decodes a string from the string pool.
+     */
+    private String poolString(int ref) {
+        if (ref < 0) {
+            return null;
+        }
+        int start = mPoolOffset + ref;
+        int length = mBuffer.getShort(start) & 0xFFFF;
+        ByteBuffer bytes = mBuffer.duplicate();
+        bytes.limit(start + 2 + length);
+        bytes.position(start + 2);
+        return UTF_8.decode(bytes).toString();
+    }
+}
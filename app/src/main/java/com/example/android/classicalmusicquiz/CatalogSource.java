@@ -0,0 +1,43 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+/**
+ * A readable list of samples, addressed by their position in the catalog file. Implementations
+ * are free to materialize samples lazily; {@link SampleIndex} only reads each position once.
+ */
+interface CatalogSource {
+
+    /**
+     * @return The number of entries in the source.
+     */
+    int size();
+
+    /**
+     * Gets the ID of an entry without materializing the whole sample.
+     * @param position The position of the entry.
+     * @return The sample ID.
+     */
+    int getSampleID(int position);
+
+    /**
+     * Reads a full sample.
+     * @param position The position of the entry.
+     * @return The sample object.
+     */
+    Sample readSample(int position);
+}
@@ -0,0 +1,419 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for content packs, single files holding the catalogs, audio, seek indices and art that
+ * otherwise ship as loose assets and drawables (see PackContentTask in buildSrc for the layout).
+ * A pack is opened with one file descriptor; its table of contents is read once and every entry
+ * is then read with positional reads, so any number of readers can share it.
+ *
+ * <p>The active pack is a side-loaded files/content.cmpack if there is one, otherwise the
+ * content.cmpack asset if the build bundled it. {@link #install(Context, File)} side-loads a new
+ * pack while the app runs. Samples of a pack catalog have pack:/// URIs, which
+ * {@link ContentPackDataSource} resolves.
+ *
+ * <p>The pack is reference counted: being active holds one reference, and readers that use it
+ * beyond a single call hold their own through {@link #acquire(Context)} and {@link #release()},
+ * as do open streams. The file descriptor is closed once the pack is no longer active and the
+ * last reference is released. Mapped entries stay valid after that.
+ */
+class ContentPack {
+
+    static final String FILE_NAME = "content.cmpack";
+    static final String SCHEME = "pack";
+
+    static final int TYPE_CATALOG = 1;
+    static final int TYPE_AUDIO = 2;
+    static final int TYPE_SEEK_INDEX = 3;
+    static final int TYPE_ART = 4;
+
+    private static final int MAGIC = 0x434D5043;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static ContentPack sInstance;
+    private static boolean sResolved;
+
+    private final FileChannel mChannel;
+    private final long mStartOffset;
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private final List<Entry> mCatalogs = new ArrayList<>();
+    // Guarded by this. The pack is closed once it drops to 0.
+    private int mReferences = 1;
+
+    /**
+     * A single blob in the pack.
+     */
+    static class Entry {
+        final String key;
+        final int type;
+        final long offset;
+        final long length;
+
+        Entry(String key, int type, long offset, long length) {
+            this.key = key;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+
+    private ContentPack(FileChannel channel, long startOffset, long length) throws IOException {
+        mChannel = channel;
+        mStartOffset = startOffset;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a content pack");
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported content pack version " + version);
+        }
+        int entryCount = header.getInt(8);
+        byte[] toc = new byte[header.getInt(12)];
+        readFully(ByteBuffer.wrap(toc), HEADER_SIZE);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(toc));
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = new Entry(in.readUTF(), in.readByte(), in.readLong(), in.readLong());
+            if (entry.offset < 0 || entry.length < 0 || entry.offset + entry.length > length) {
+                throw new IOException("Content pack entry " + entry.key + " is out of bounds");
+            }
+            if (entry.type == TYPE_CATALOG) {
+                mCatalogs.add(entry);
+            } else {
+                mEntries.put(entryKey(entry.key, entry.type), entry);
+            }
+        }
+    }
+
+    /**
+     * Gets the active pack, opening it if this is the first use since launch or invalidation.
+     * @param context The application context.
+     * @return The active pack, or null if there is none.
+     */
+    static synchronized ContentPack getInstance(Context context) {
+        if (!sResolved) {
+            sInstance = openActive(context.getApplicationContext());
+            sResolved = true;
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets the active pack and holds a reference to it, so that it stays open until
+     * {@link #release()} even if it is invalidated meanwhile.
+     * @param context The application context.
+     * @return The active pack, or null if there is none.
+     */
+    static synchronized ContentPack acquire(Context context) {
+        ContentPack pack = getInstance(context);
+        if (pack != null) {
+            // The active pack holds a reference, so it can't be closed yet.
+            pack.retain();
+        }
+        return pack;
+    }
+
+    /**
+     * Makes a pack the side-loaded one and swaps it in as one unit: the pack is renamed into
+     * place atomically, then the active pack, the loaded catalog and the cached portraits are
+     * dropped so that they are all read from the new pack. Readers of the old pack finish on it
+     * and it is closed once they release it. Reads and writes files, so call it off the main
+     * thread.
+     * @param context The application context.
+     * @param file The new pack. It is moved if it's on the same file system as the app's files,
+     *             otherwise copied.
+     * @throws IOException If the file is not a valid pack or can't be put in place. The active
+     * pack is then unchanged.
+     */
+    static void install(Context context, File file) throws IOException {
+        // Validate it before it can replace a good pack.
+        open(file).release();
+
+        File filesDir = context.getFilesDir();
+        File staged = new File(filesDir, FILE_NAME + ".new");
+        if (!file.renameTo(staged)) {
+            copy(file, staged);
+        }
+        synchronized (ContentPack.class) {
+            if (!staged.renameTo(new File(filesDir, FILE_NAME))) {
+                staged.delete();
+                throw new IOException("Could not install content pack " + file);
+            }
+            invalidate();
+        }
+        SampleCatalog.invalidate();
+        ArtworkCache.getInstance(context).clear();
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            target.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Drops the active pack so that the next call to {@link #getInstance(Context)} looks for it
+     * again. {@link #install(Context, File)} calls it when it swaps packs. The old pack is closed
+     * once its readers release it.
+     */
+    static synchronized void invalidate() {
+        if (sInstance != null) {
+            sInstance.release();
+        }
+        sInstance = null;
+        sResolved = false;
+    }
+
+    /**
+     * Takes a reference to the pack.
+     * @return false if the pack is already closed.
+     */
+    private synchronized boolean retain() {
+        if (mReferences == 0) {
+            return false;
+        }
+        mReferences++;
+        return true;
+    }
+
+    /**
+     * Releases a reference taken by {@link #acquire(Context)}, closing the pack if it was the
+     * last one.
+     */
+    synchronized void release() {
+        if (mReferences == 0) {
+            return;
+        }
+        if (--mReferences == 0) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static ContentPack openActive(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (file.exists()) {
+            try {
+                return open(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            return open(context.getAssets().openFd(FILE_NAME));
+        } catch (FileNotFoundException e) {
+            // No bundled pack, content is read from the loose assets.
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a pack file.
+     * @param file The pack.
+     * @return The opened pack.
+     * @throws IOException If the file is missing or not a valid pack.
+     */
+    static ContentPack open(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            return new ContentPack(inputStream.getChannel(), 0, file.length());
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a pack stored uncompressed in the APK.
+     * @param fileDescriptor The descriptor of the pack asset. It stays open with the pack.
+     * @return The opened pack.
+     * @throws IOException If the asset is not a valid pack.
+     */
+    static ContentPack open(AssetFileDescriptor fileDescriptor) throws IOException {
+        FileInputStream inputStream = fileDescriptor.createInputStream();
+        try {
+            return new ContentPack(inputStream.getChannel(), fileDescriptor.getStartOffset(),
+                    fileDescriptor.getLength());
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The catalog entries, lowest priority first.
+     */
+    List<Entry> getCatalogs() {
+        return Collections.unmodifiableList(mCatalogs);
+    }
+
+    /**
+     * Gets an audio, seek index or art entry.
+     * @param key The file name of the audio or seek index, or the albumArtID of the art.
+     * @param type The entry type.
+     * @return The entry, or null if the pack has no such entry.
+     */
+    Entry getEntry(String key, int type) {
+        return mEntries.get(entryKey(key, type));
+    }
+
+    private static String entryKey(String key, int type) {
+        return type + "/" + key;
+    }
+
+    /**
+     * Reads part of an entry without moving any shared file position.
+     * @param entry The entry to read.
+     * @param position The position within the entry.
+     * @param buffer Receives up to its remaining bytes.
+     * @return The number of bytes read, or -1 at the end of the entry.
+     * @throws IOException If reading fails.
+     */
+    int read(Entry entry, long position, ByteBuffer buffer) throws IOException {
+        long remaining = entry.length - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (buffer.remaining() > remaining) {
+            buffer.limit(buffer.position() + (int) remaining);
+        }
+        return mChannel.read(buffer, mStartOffset + entry.offset + position);
+    }
+
+    /**
+     * Maps an entry into memory. Used for catalogs, which are read at random.
+     * @param entry The entry to map.
+     * @return A read-only buffer over the entry.
+     * @throws IOException If mapping fails.
+     */
+    ByteBuffer map(Entry entry) throws IOException {
+        return mChannel.map(FileChannel.MapMode.READ_ONLY, mStartOffset + entry.offset,
+                entry.length);
+    }
+
+    /**
+     * Opens a stream over an entry. Each stream reads at its own position, and holds a reference
+     * to the pack until it is closed. Reads fail if the pack was closed before the stream opened.
+     * @param entry The entry to read.
+     * @return The stream.
+     */
+    InputStream openStream(final Entry entry) {
+        final boolean retained = retain();
+        return new InputStream() {
+            private final byte[] mSingleByte = new byte[1];
+            private long mPosition;
+            private boolean mClosed;
+
+            @Override
+            public int read() throws IOException {
+                return read(mSingleByte, 0, 1) == -1 ? -1 : mSingleByte[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                int count = ContentPack.this.read(entry, mPosition,
+                        ByteBuffer.wrap(buffer, offset, length));
+                if (count > 0) {
+                    mPosition += count;
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long count) {
+                long skipped = Math.min(Math.max(count, 0), entry.length - mPosition);
+                mPosition += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(entry.length - mPosition, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public void close() {
+                if (!mClosed) {
+                    mClosed = true;
+                    if (retained) {
+                        release();
+                    }
+                }
+            }
+        };
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = mChannel.read(buffer, mStartOffset + position);
+            if (count < 0) {
+                throw new EOFException("Truncated content pack");
+            }
+            position += count;
+        }
+    }
+}
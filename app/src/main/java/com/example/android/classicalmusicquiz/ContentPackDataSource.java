@@ -0,0 +1,140 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Data source that reads pack:/// URIs from the active {@link ContentPack} with positional reads,
+ * holding a reference to the pack while it is open. Every other URI is passed to a fallback data
+ * source.
+ */
+class ContentPackDataSource implements DataSource {
+
+    /**
+     * Creates content pack data sources that fall back to the sources of another factory.
+     */
+    static class Factory implements DataSource.Factory {
+
+        private final Context mContext;
+        private final DataSource.Factory mFallbackFactory;
+
+        Factory(Context context, DataSource.Factory fallbackFactory) {
+            mContext = context.getApplicationContext();
+            mFallbackFactory = fallbackFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ContentPackDataSource(mContext, mFallbackFactory.createDataSource());
+        }
+    }
+
+    private final Context mContext;
+    private final DataSource mFallback;
+    private ContentPack mPack;
+    private ContentPack.Entry mEntry;
+    private long mPosition;
+    private long mEndPosition;
+    private DataSource mOpenedFallback;
+    private Uri mUri;
+
+
+    private ContentPackDataSource(Context context, DataSource fallback) {
+        mContext = context;
+        mFallback = fallback;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        mUri = dataSpec.uri;
+        if (!ContentPack.SCHEME.equals(dataSpec.uri.getScheme())) {
+            mOpenedFallback = mFallback;
+            return mFallback.open(dataSpec);
+        }
+
+        String path = dataSpec.uri.getPath();
+        String key = path != null && path.startsWith("/") ? path.substring(1) : path;
+        mPack = ContentPack.acquire(mContext);
+        ContentPack.Entry entry = mPack != null
+                ? mPack.getEntry(key, ContentPack.TYPE_AUDIO) : null;
+        if (entry == null) {
+            throw new FileNotFoundException("No content pack entry for " + dataSpec.uri);
+        }
+        if (dataSpec.position > entry.length) {
+            throw new EOFException();
+        }
+        long length = dataSpec.length != C.LENGTH_UNSET
+                ? dataSpec.length : entry.length - dataSpec.position;
+        if (dataSpec.position + length > entry.length) {
+            throw new EOFException();
+        }
+        mEntry = entry;
+        mPosition = dataSpec.position;
+        mEndPosition = dataSpec.position + length;
+        return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (mOpenedFallback != null) {
+            return mOpenedFallback.read(buffer, offset, readLength);
+        }
+        if (readLength == 0) {
+            return 0;
+        }
+        if (mPosition == mEndPosition) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        int length = (int) Math.min(readLength, mEndPosition - mPosition);
+        int bytesRead = mPack.read(mEntry, mPosition, ByteBuffer.wrap(buffer, offset, length));
+        if (bytesRead < 0) {
+            throw new EOFException();
+        }
+        mPosition += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public Uri getUri() {
+        return mUri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mUri = null;
+        mEntry = null;
+        if (mPack != null) {
+            mPack.release();
+            mPack = null;
+        }
+        if (mOpenedFallback != null) {
+            mOpenedFallback = null;
+            mFallback.close();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only journal of the game in progress, so that it can be resumed after the process is
+ * killed. The file starts with a snapshot of the game (the asked samples bitset and the score)
+ * followed by fixed-size event records. Events are buffered in memory and handed to a writer
+ * thread on {@link #flush()}; {@link #checkpoint()} replaces the whole file with a fresh
+ * snapshot, which both compacts it and syncs it to disk. Reading it back is a single sequential
+ * pass, and a game read back is resumed by appending to the same file.
+ *
+ * <p>File format, big-endian: magic, version, sample count, score, bitset word count, the bitset
+ * words, then records of three ints: type, catalog position of the answer, score delta.
+ */
+class GameJournal {
+
+    private static final String TAG = GameJournal.class.getSimpleName();
+    private static final String FILE_NAME = "game.journal";
+    private static final int MAGIC = 0x434D514A;
+    private static final int SNAPSHOT_HEADER_SIZE = 20;
+    private static final int VERSION = 1;
+
+    private static final int RECORD_QUESTION_ASKED = 1;
+    private static final int RECORD_ANSWER_GIVEN = 2;
+    private static final int RECORD_SIZE = 12;
+    private static final int BUFFER_RECORDS = 64;
+    private static final int CHECKPOINT_RECORDS = 256;
+
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor();
+    private static GameJournal sInstance;
+
+    private final AtomicFile mFile;
+    private final byte[] mBuffer = new byte[RECORD_SIZE * BUFFER_RECORDS];
+    private int mBufferLength;
+    private int mRecordsSinceCheckpoint;
+    private boolean mActive;
+    private boolean mFinished;
+
+    // The state the journal describes, kept to write snapshots from.
+    private int mSampleCount;
+    private long[] mAskedBits;
+    private int mScore;
+
+    // Only used on the writer thread.
+    private FileOutputStream mOut;
+
+
+    GameJournal(File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * Gets the process-wide journal, stored in the app's files directory.
+     * @param context The application context.
+     * @return The journal.
+     */
+    static synchronized GameJournal getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new GameJournal(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * The game read back from the journal.
+     */
+    static class State {
+        final int sampleCount;
+        final long[] askedBits;
+        final int score;
+        // The number of records replayed, and the bytes up to the end of the last one.
+        final int records;
+        final long length;
+
+        State(int sampleCount, long[] askedBits, int score, int records, long length) {
+            this.sampleCount = sampleCount;
+            this.askedBits = askedBits;
+            this.score = score;
+            this.records = records;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Callback for {@link #checkForGame(Context, GameCheckListener)}.
+     */
+    interface GameCheckListener {
+        /**
+         * Called on the main thread.
+         * @param hasGame Whether the journal holds a game that can be resumed.
+         */
+        void onGameChecked(boolean hasGame);
+    }
+
+    /**
+     * Checks on the writer thread, after any pending writes, whether the journal holds a game
+     * to resume. The catalog size and the journal are both read from disk, so this keeps them
+     * off the main thread.
+     * @param context The application context.
+     * @param listener Told the result on the main thread.
+     */
+    void checkForGame(Context context, final GameCheckListener listener) {
+        final Context appContext = context.getApplicationContext();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean hasGame = read(SampleCatalog.peekSize(appContext)) != null;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onGameChecked(hasGame);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the game left in the journal by a previous process.
+     * @param sampleCount The number of samples in the catalog, which the journal must match.
+     * @return The game, or null if there is none, it was finished by this process, or it was
+     * recorded against another catalog.
+     */
+    synchronized State read(int sampleCount) {
+        if (mFinished) {
+            // The file may not be deleted yet.
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(mFile.openRead()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != sampleCount) {
+                return null;
+            }
+            int score = in.readInt();
+            long[] askedBits = new long[in.readInt()];
+            if (askedBits.length != (sampleCount + 63) >>> 6) {
+                return null;
+            }
+            for (int i = 0; i < askedBits.length; i++) {
+                askedBits[i] = in.readLong();
+            }
+
+            // Replay the events. A record cut short by the process dying ends the journal.
+            int records = 0;
+            while (true) {
+                int type;
+                int position;
+                int scoreDelta;
+                try {
+                    type = in.readInt();
+                    position = in.readInt();
+                    scoreDelta = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (position < 0 || position >= sampleCount) {
+                    Log.w(TAG, "Journal record out of range, ignoring the rest");
+                    break;
+                }
+                if (type == RECORD_ANSWER_GIVEN) {
+                    askedBits[position >>> 6] |= 1L << position;
+                    score += scoreDelta;
+                }
+                records++;
+            }
+            long length = SNAPSHOT_HEADER_SIZE + askedBits.length * 8L
+                    + (long) records * RECORD_SIZE;
+            return new State(sampleCount, askedBits, score, records, length);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read the game journal", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing was written, there is nothing to lose.
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts journaling a game, replacing whatever the journal held.
+     * @param sampleCount The number of samples in the catalog.
+     * @param askedBits The samples already asked, as a bitset over catalog positions.
+     * @param score The current score.
+     */
+    synchronized void start(int sampleCount, long[] askedBits, int score) {
+        mSampleCount = sampleCount;
+        mAskedBits = askedBits.clone();
+        mScore = score;
+        mActive = true;
+        mFinished = false;
+        checkpoint();
+    }
+
+    /**
+     * Continues journaling a game read back by {@link #read(int)}. Records are appended after the
+     * last complete one, so a record the previous process left cut short is dropped first.
+     * @param state The game read back.
+     */
+    synchronized void resume(State state) {
+        mSampleCount = state.sampleCount;
+        mAskedBits = state.askedBits.clone();
+        mScore = state.score;
+        mActive = true;
+        mFinished = false;
+        mBufferLength = 0;
+        mRecordsSinceCheckpoint = state.records;
+        final long length = state.length;
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                truncate(length);
+            }
+        });
+    }
+
+    /**
+     * Records that a question is on screen.
+     * @param position The catalog position of its answer.
+     */
+    synchronized void questionAsked(int position) {
+        append(RECORD_QUESTION_ASKED, position, 0);
+    }
+
+    /**
+     * Records that a question was answered, so its answer is never asked again.
+     * @param position The catalog position of its answer.
+     * @param scoreDelta How much the answer changed the score.
+     */
+    synchronized void answerGiven(int position, int scoreDelta) {
+        if (!mActive || position < 0) {
+            return;
+        }
+        mAskedBits[position >>> 6] |= 1L << position;
+        mScore += scoreDelta;
+        append(RECORD_ANSWER_GIVEN, position, scoreDelta);
+        if (mRecordsSinceCheckpoint >= CHECKPOINT_RECORDS) {
+            checkpoint();
+        }
+    }
+
+    private void append(int type, int position, int scoreDelta) {
+        if (!mActive || position < 0) {
+            return;
+        }
+        if (mBufferLength == mBuffer.length) {
+            flush();
+        }
+        putInt(type);
+        putInt(position);
+        putInt(scoreDelta);
+        mRecordsSinceCheckpoint++;
+    }
+
+    private void putInt(int value) {
+        mBuffer[mBufferLength++] = (byte) (value >>> 24);
+        mBuffer[mBufferLength++] = (byte) (value >>> 16);
+        mBuffer[mBufferLength++] = (byte) (value >>> 8);
+        mBuffer[mBufferLength++] = (byte) value;
+    }
+
+    /**
+     * Hands the buffered records to the writer thread. They survive the process being killed
+     * once written, but are only synced to disk by the next checkpoint.
+     */
+    synchronized void flush() {
+        if (mBufferLength == 0) {
+            return;
+        }
+        final byte[] records = Arrays.copyOf(mBuffer, mBufferLength);
+        mBufferLength = 0;
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                appendRecords(records);
+            }
+        });
+    }
+
+    /**
+     * Replaces the journal with a snapshot of the current game and syncs it to disk. Buffered
+     * records are already part of the snapshot, so they are dropped.
+     */
+    synchronized void checkpoint() {
+        if (!mActive) {
+            return;
+        }
+        final byte[] snapshot = serializeSnapshot();
+        mBufferLength = 0;
+        mRecordsSinceCheckpoint = 0;
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeSnapshot(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Deletes the journal once the game is over or abandoned.
+     */
+    synchronized void finish() {
+        mActive = false;
+        mFinished = true;
+        mBufferLength = 0;
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeOutput();
+                mFile.delete();
+            }
+        });
+    }
+
+    private byte[] serializeSnapshot() {
+        ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream(SNAPSHOT_HEADER_SIZE + mAskedBits.length * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mSampleCount);
+            out.writeInt(mScore);
+            out.writeInt(mAskedBits.length);
+            for (long word : mAskedBits) {
+                out.writeLong(word);
+            }
+        } catch (IOException e) {
+            // Writing to memory can't fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void appendRecords(byte[] records) {
+        try {
+            if (mOut == null) {
+                mOut = new FileOutputStream(mFile.getBaseFile(), true);
+            }
+            mOut.write(records);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not append to the game journal", e);
+            closeOutput();
+        }
+    }
+
+    private void truncate(long length) {
+        closeOutput();
+        try {
+            mOut = new FileOutputStream(mFile.getBaseFile(), true);
+            mOut.getChannel().truncate(length);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not truncate the game journal, rewriting it", e);
+            closeOutput();
+            checkpoint();
+        }
+    }
+
+    private void writeSnapshot(byte[] snapshot) {
+        closeOutput();
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            out.write(snapshot);
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write a game journal checkpoint", e);
+            if (out != null) {
+                mFile.failWrite(out);
+            }
+        }
+    }
+
+    private void closeOutput() {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close the game journal", e);
+            }
+            mOut = null;
+        }
+    }
+}
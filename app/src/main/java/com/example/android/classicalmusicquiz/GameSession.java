@@ -0,0 +1,153 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Random;
+
+/**
+ * The state of one game: the question on screen, the one after it, and which samples have been
+ * asked. Asked samples are kept as a bitset over catalog positions, one bit per sample, which is
+ * small enough to save in a Bundle even for a large catalog. Sessions are held in the
+ * {@link SessionStore} so that a recreated activity picks up the same game.
+ */
+class GameSession {
+
+    private final SampleCatalog mCatalog;
+    private final QuestionGenerator mGenerator;
+    private final long[] mAskedBits;
+    private Question mQuestion = new Question();
+    private Question mNextQuestion = new Question();
+    private boolean mNextQuestionGenerated;
+    private boolean mAnswered;
+
+
+    private GameSession(SampleCatalog catalog, long[] askedBits, Random random) {
+        mCatalog = catalog;
+        mAskedBits = askedBits;
+
+        int size = catalog.size();
+        int[] remainingSampleIDs = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isSet(askedBits, i)) {
+                remainingSampleIDs[count++] = catalog.getSampleID(i);
+            }
+        }
+        int[] pool = new int[count];
+        System.arraycopy(remainingSampleIDs, 0, pool, 0, count);
+        mGenerator = new QuestionGenerator(pool, random);
+        mGenerator.next(mQuestion);
+    }
+
+    /**
+     * Starts a new game over the whole catalog.
+     * @param catalog The sample catalog.
+     * @param random The random number generator for the questions.
+     * @return The new session, with its first question generated.
+     */
+    static GameSession create(SampleCatalog catalog, Random random) {
+        return new GameSession(catalog, new long[wordCount(catalog.size())], random);
+    }
+
+    /**
+     * Resumes a game from the bitset returned by {@link #getAskedBits()}.
+     * @param catalog The sample catalog.
+     * @param askedBits The saved bitset.
+     * @param random The random number generator for the questions.
+     * @return The resumed session, or null if the bitset doesn't match the catalog.
+     */
+    static GameSession restore(SampleCatalog catalog, long[] askedBits, Random random) {
+        if (askedBits == null || askedBits.length != wordCount(catalog.size())) {
+            return null;
+        }
+        return new GameSession(catalog, askedBits.clone(), random);
+    }
+
+    /**
+     * @return The question on screen.
+     */
+    Question getQuestion() {
+        return mQuestion;
+    }
+
+    /**
+     * Gets the question that follows the one on screen, generating it on first use.
+     * @return The next question.
+     */
+    Question getNextQuestion() {
+        if (!mNextQuestionGenerated) {
+            mGenerator.next(mNextQuestion);
+            mNextQuestionGenerated = true;
+        }
+        return mNextQuestion;
+    }
+
+    /**
+     * Records that the question on screen was answered, so its answer is never asked again.
+     * @return The catalog position of the answer.
+     */
+    int markAnswered() {
+        int position = getAnswerPosition();
+        if (position >= 0) {
+            mAskedBits[position >>> 6] |= 1L << position;
+        }
+        mAnswered = true;
+        return position;
+    }
+
+    /**
+     * @return The catalog position of the answer to the question on screen, or -1 if there is
+     * none.
+     */
+    int getAnswerPosition() {
+        return mCatalog.indexOf(mQuestion.getAnswerSampleID());
+    }
+
+    /**
+     * @return true if the question on screen was answered and the game should move on.
+     */
+    boolean isAnswered() {
+        return mAnswered;
+    }
+
+    /**
+     * Moves on to the next question. The previous question object is reused for the one after.
+     */
+    void advance() {
+        Question previous = mQuestion;
+        mQuestion = getNextQuestion();
+        mNextQuestion = previous;
+        mNextQuestionGenerated = false;
+        mAnswered = false;
+    }
+
+    /**
+     * @return A copy of the asked samples bitset, to be passed to
+     * {@link #restore(SampleCatalog, long[], Random)}.
+     */
+    long[] getAskedBits() {
+        return mAskedBits.clone();
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private static boolean isSet(long[] bits, int position) {
+        return (bits[position >>> 6] & (1L << position)) != 0;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Mp3Extractor that seeks through a precomputed {@link SeekIndex} instead of the seeker it
+ * derives from the file. Mp3Extractor still times the first frame after a seek with its own
+ * estimate, so sample timestamps are rebased onto the time of the index entry that was sought.
+ * The index is read on the loading thread when the extractor is initialized; if it can't be read,
+ * the extractor behaves exactly like Mp3Extractor.
+ */
+class IndexedMp3Extractor implements Extractor {
+
+    private static final String TAG = IndexedMp3Extractor.class.getSimpleName();
+
+    private final Mp3Extractor mExtractor = new Mp3Extractor();
+    private final Context mContext;
+    private final boolean mInPack;
+    private final String mIndexName;
+    private IndexedOutput mIndexedOutput;
+
+
+    /**
+     * Creates extractors for one sample.
+     */
+    static class Factory implements ExtractorsFactory {
+
+        private final Context mContext;
+        private final boolean mInPack;
+        private final String mIndexName;
+
+        /**
+         * @param context The application context.
+         * @param inPack true to read the seek index from the active content pack, false to read
+         *               it from the assets.
+         * @param indexName The name of the seek index asset or pack entry of the sample.
+         */
+        Factory(Context context, boolean inPack, String indexName) {
+            mContext = context.getApplicationContext();
+            mInPack = inPack;
+            mIndexName = indexName;
+        }
+
+        @Override
+        public Extractor[] createExtractors() {
+            return new Extractor[] {new IndexedMp3Extractor(mContext, mInPack, mIndexName)};
+        }
+    }
+
+    private IndexedMp3Extractor(Context context, boolean inPack, String indexName) {
+        mContext = context;
+        mInPack = inPack;
+        mIndexName = indexName;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+        return mExtractor.sniff(input);
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+        SeekIndex seekIndex = null;
+        try {
+            seekIndex = readIndex();
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read seek index " + mIndexName, e);
+        }
+        if (seekIndex != null) {
+            mIndexedOutput = new IndexedOutput(output, seekIndex);
+            mExtractor.init(mIndexedOutput);
+        } else {
+            mExtractor.init(output);
+        }
+    }
+
+    /**
+     * Reads the seek index, holding a reference to the content pack while it's read from one.
+     */
+    private SeekIndex readIndex() throws IOException {
+        if (!mInPack) {
+            return SeekIndex.read(MappedAssets.open(mContext.getAssets(), mIndexName));
+        }
+        ContentPack pack = ContentPack.acquire(mContext);
+        if (pack == null) {
+            throw new FileNotFoundException("No content pack for " + mIndexName);
+        }
+        try {
+            ContentPack.Entry entry = pack.getEntry(mIndexName, ContentPack.TYPE_SEEK_INDEX);
+            if (entry == null) {
+                throw new FileNotFoundException(mIndexName);
+            }
+            return SeekIndex.read(pack.openStream(entry));
+        } finally {
+            pack.release();
+        }
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition)
+            throws IOException, InterruptedException {
+        return mExtractor.read(input, seekPosition);
+    }
+
+    @Override
+    public void seek(long position) {
+        mExtractor.seek(position);
+        if (mIndexedOutput != null) {
+            mIndexedOutput.rebase(position);
+        }
+    }
+
+    @Override
+    public void release() {
+        mExtractor.release();
+    }
+
+    /**
+     * ExtractorOutput that reports the seek index in place of the extractor's own seek map, and
+     * rebases the timestamps of its (single) track after a seek.
+     */
+    private static class IndexedOutput implements ExtractorOutput {
+
+        private final ExtractorOutput mOutput;
+        private final SeekIndex mSeekIndex;
+        private RebasingTrackOutput mTrackOutput;
+
+        IndexedOutput(ExtractorOutput output, SeekIndex seekIndex) {
+            mOutput = output;
+            mSeekIndex = seekIndex;
+        }
+
+        /**
+         * Times the next sample at the index entry of a seek position.
+         * @param position The byte position the extractor was sought to.
+         */
+        void rebase(long position) {
+            if (mTrackOutput != null) {
+                mTrackOutput.rebase(mSeekIndex.getTimeUs(position));
+            }
+        }
+
+        @Override
+        public TrackOutput track(int trackId) {
+            if (mTrackOutput == null) {
+                mTrackOutput = new RebasingTrackOutput(mOutput.track(trackId));
+            }
+            return mTrackOutput;
+        }
+
+        @Override
+        public void endTracks() {
+            mOutput.endTracks();
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+            mOutput.seekMap(mSeekIndex);
+        }
+    }
+
+    /**
+     * TrackOutput that shifts sample timestamps so that the first sample after a seek starts at
+     * the time of the index entry. Frames after it keep the extractor's spacing, which counts
+     * decoded frames and is exact.
+     */
+    private static class RebasingTrackOutput implements TrackOutput {
+
+        private final TrackOutput mOutput;
+        private long mOffsetUs;
+        private long mRebaseTimeUs = C.TIME_UNSET;
+
+        RebasingTrackOutput(TrackOutput output) {
+            mOutput = output;
+        }
+
+        void rebase(long timeUs) {
+            mRebaseTimeUs = timeUs;
+        }
+
+        @Override
+        public void format(Format format) {
+            mOutput.format(format);
+        }
+
+        @Override
+        public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            return mOutput.sampleData(input, length, allowEndOfInput);
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length) {
+            mOutput.sampleData(data, length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size, int offset,
+                                   byte[] encryptionKey) {
+            if (mRebaseTimeUs != C.TIME_UNSET) {
+                mOffsetUs = mRebaseTimeUs - timeUs;
+                mRebaseTimeUs = C.TIME_UNSET;
+            }
+            mOutput.sampleMetadata(timeUs + mOffsetUs, flags, size, offset, encryptionKey);
+        }
+    }
+}
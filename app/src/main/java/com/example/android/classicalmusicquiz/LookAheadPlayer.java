@@ -0,0 +1,315 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.source.ClippingMediaSource;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.Random;
+
+/**
+ * A pair of long-lived players. The active one plays the current question while the standby one
+ * buffers the next question's clip with playWhenReady off. Moving to the next question swaps them,
+ * so its audio starts as soon as it appears instead of after a buffering gap.
+ *
+ * <p>Samples with an excerpt are clipped to it, so only that window is read and decoded. In
+ * random excerpt mode the window is moved to a random offset inside the sample.
+ */
+class LookAheadPlayer {
+
+    private static final String ASSET_SCHEME = "asset:///";
+    private static final String PACK_SCHEME = ContentPack.SCHEME + ":///";
+
+    private final Context mContext;
+    private final DataSource.Factory mDataSourceFactory;
+    private final DataSource.Factory mCachedDataSourceFactory;
+    private final DefaultExtractorsFactory mExtractorsFactory = new DefaultExtractorsFactory();
+    private final ExoPlayer.EventListener mListener;
+    private final Random mRandom = new Random();
+    private boolean mRandomExcerpts;
+    private SimpleExoPlayer mActivePlayer;
+    private SimpleExoPlayer mStandbyPlayer;
+    private PlaybackProfile.ProfiledLoadControl mActiveLoadControl;
+    private PlaybackProfile.ProfiledLoadControl mStandbyLoadControl;
+    private int mActiveSampleID = -1;
+    private int mStandbySampleID = -1;
+    private long mPlayRequestTimeMs;
+    private long mTimeToFirstAudioMs = -1;
+    private long mRebufferStartMs = -1;
+    private long mPeakNativeHeapBytes;
+
+
+    /**
+     * Creates both players.
+     * @param context The application context.
+     * @param profile How much each player buffers.
+     * @param listener Receives the events of whichever player is active.
+     */
+    LookAheadPlayer(Context context, PlaybackProfile profile, ExoPlayer.EventListener listener) {
+        mListener = listener;
+        mContext = context.getApplicationContext();
+        String userAgent = Util.getUserAgent(context, "ClassicalMusicQuiz");
+        mDataSourceFactory = new ContentPackDataSource.Factory(context,
+                new MappedAssetDataSource.Factory(context.getAssets(),
+                        new DefaultDataSourceFactory(context, userAgent)));
+        mCachedDataSourceFactory = MediaCache.getInstance(context).wrap(mDataSourceFactory);
+        mActiveLoadControl = profile.createLoadControl();
+        mStandbyLoadControl = profile.createLoadControl();
+        mActivePlayer = createPlayer(context, mActiveLoadControl);
+        mStandbyPlayer = createPlayer(context, mStandbyLoadControl);
+    }
+
+    private SimpleExoPlayer createPlayer(Context context, LoadControl loadControl) {
+        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(context,
+                new DefaultTrackSelector(), loadControl);
+        player.addListener(new ForwardingListener(player));
+        return player;
+    }
+
+    /**
+     * Builds the source for a sample, clipped to its excerpt if it has one. MP3 samples with a
+     * seek index seek through it, so excerpts that don't start at 0 cost a single seek. Samples
+     * from the network are read through the {@link MediaCache}.
+     */
+    private MediaSource buildMediaSource(Sample sample) {
+        Uri uri = Uri.parse(sample.getUri());
+        DataSource.Factory dataSourceFactory = MediaCache.isCacheable(uri)
+                ? mCachedDataSourceFactory : mDataSourceFactory;
+
+        ExtractorsFactory extractorsFactory = mExtractorsFactory;
+        String seekIndex = sample.getSeekIndex();
+        if (seekIndex != null && sample.getUri().endsWith(".mp3")) {
+            if (seekIndex.startsWith(ASSET_SCHEME)) {
+                extractorsFactory = new IndexedMp3Extractor.Factory(mContext, false,
+                        seekIndex.substring(ASSET_SCHEME.length()));
+            } else if (seekIndex.startsWith(PACK_SCHEME)) {
+                extractorsFactory = new IndexedMp3Extractor.Factory(mContext, true,
+                        seekIndex.substring(PACK_SCHEME.length()));
+            }
+        }
+        MediaSource mediaSource = new ExtractorMediaSource(uri, dataSourceFactory,
+                extractorsFactory, null, null);
+
+        long startMs = Math.max(sample.getExcerptStartMs(), 0);
+        long durationMs = sample.getExcerptDurationMs();
+        if (mRandomExcerpts && durationMs > 0 && sample.getDurationMs() > durationMs) {
+            startMs = (long) (mRandom.nextDouble() * (sample.getDurationMs() - durationMs));
+        }
+        if (startMs == 0 && durationMs <= 0) {
+            return mediaSource;
+        }
+        long endUs = durationMs > 0 ? (startMs + durationMs) * 1000 : C.TIME_END_OF_SOURCE;
+        return new ClippingMediaSource(mediaSource, startMs * 1000, endUs);
+    }
+
+    /**
+     * Sets whether excerpts start at a random offset instead of their configured start. Only
+     * samples with a known duration and excerpt duration can be randomized.
+     * @param randomExcerpts true to randomize excerpts.
+     */
+    void setRandomExcerpts(boolean randomExcerpts) {
+        mRandomExcerpts = randomExcerpts;
+    }
+
+    /**
+     * @return The player of the current question.
+     */
+    SimpleExoPlayer getPlayer() {
+        return mActivePlayer;
+    }
+
+    /**
+     * @return The ID of the sample last passed to {@link #play(Sample)}, or -1.
+     */
+    int getActiveSampleID() {
+        return mActiveSampleID;
+    }
+
+    /**
+     * Starts buffering a sample on the standby player without playing it.
+     * @param sample The answer of the next question.
+     */
+    void preload(Sample sample) {
+        if (sample.getSampleID() == mStandbySampleID) {
+            return;
+        }
+        mStandbySampleID = sample.getSampleID();
+        mStandbyPlayer.setPlayWhenReady(false);
+        mStandbyPlayer.prepare(buildMediaSource(sample));
+    }
+
+    /**
+     * Plays a sample, swapping in the standby player if it has already buffered it.
+     * @param sample The sample to play.
+     * @return The player now playing, which may differ from the previous one.
+     */
+    SimpleExoPlayer play(Sample sample) {
+        mPlayRequestTimeMs = SystemClock.elapsedRealtime();
+        mTimeToFirstAudioMs = -1;
+        mRebufferStartMs = -1;
+        recordQuestionMemory();
+
+        if (sample.getSampleID() == mStandbySampleID) {
+            SimpleExoPlayer previous = mActivePlayer;
+            mActivePlayer = mStandbyPlayer;
+            mStandbyPlayer = previous;
+            PlaybackProfile.ProfiledLoadControl previousLoadControl = mActiveLoadControl;
+            mActiveLoadControl = mStandbyLoadControl;
+            mStandbyLoadControl = previousLoadControl;
+            mStandbyPlayer.stop();
+        } else {
+            mActivePlayer.prepare(buildMediaSource(sample));
+        }
+        mActiveSampleID = sample.getSampleID();
+        mStandbySampleID = -1;
+        mActivePlayer.setPlayWhenReady(true);
+        return mActivePlayer;
+    }
+
+    /**
+     * Records the memory peaks of the question that was playing, if any, and starts over.
+     */
+    private void recordQuestionMemory() {
+        if (mActiveSampleID >= 0) {
+            sampleNativeHeap();
+            QuizMetrics.BUFFER_PEAK_KB.record(mActiveLoadControl.takePeakBytes() / 1024);
+            QuizMetrics.NATIVE_HEAP_KB.record(mPeakNativeHeapBytes / 1024);
+        }
+        mPeakNativeHeapBytes = 0;
+    }
+
+    /**
+     * Samples the native heap, where the decoders and extractors allocate, on player events.
+     */
+    private void sampleNativeHeap() {
+        mPeakNativeHeapBytes = Math.max(mPeakNativeHeapBytes, Debug.getNativeHeapAllocatedSize());
+    }
+
+    /**
+     * Releases both players.
+     */
+    void release() {
+        recordQuestionMemory();
+        mActiveSampleID = -1;
+        mActivePlayer.stop();
+        mActivePlayer.release();
+        mStandbyPlayer.stop();
+        mStandbyPlayer.release();
+    }
+
+    /**
+     * Records the time to first audio, memory, rebuffers and errors in {@link QuizMetrics}, and forwards
+     * the events of the active player.
+     */
+    private class ForwardingListener implements ExoPlayer.EventListener {
+
+        private final SimpleExoPlayer mPlayer;
+
+        ForwardingListener(SimpleExoPlayer player) {
+            mPlayer = player;
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+            if (mPlayer == mActivePlayer) {
+                mListener.onTimelineChanged(timeline, manifest);
+            }
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups,
+                                    TrackSelectionArray trackSelections) {
+            if (mPlayer == mActivePlayer) {
+                mListener.onTracksChanged(trackGroups, trackSelections);
+            }
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+            sampleNativeHeap();
+            if (isLoading) {
+                QuizMetrics.LOADS.incrementAndGet();
+            }
+            if (mPlayer == mActivePlayer) {
+                mListener.onLoadingChanged(isLoading);
+            }
+        }
+
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            sampleNativeHeap();
+            if (mPlayer != mActivePlayer) {
+                return;
+            }
+            long nowMs = SystemClock.elapsedRealtime();
+            if (playWhenReady && playbackState == ExoPlayer.STATE_READY
+                    && mTimeToFirstAudioMs < 0) {
+                mTimeToFirstAudioMs = nowMs - mPlayRequestTimeMs;
+                QuizMetrics.TIME_TO_FIRST_AUDIO_MS.record(mTimeToFirstAudioMs);
+            } else if (playbackState == ExoPlayer.STATE_BUFFERING && mTimeToFirstAudioMs >= 0
+                    && mRebufferStartMs < 0) {
+                // Audio had started, so this is a stall rather than the initial buffering.
+                mRebufferStartMs = nowMs;
+                QuizMetrics.REBUFFERS.incrementAndGet();
+            } else if (playbackState != ExoPlayer.STATE_BUFFERING && mRebufferStartMs >= 0) {
+                QuizMetrics.REBUFFER_MS.record(nowMs - mRebufferStartMs);
+                mRebufferStartMs = -1;
+            }
+            mListener.onPlayerStateChanged(playWhenReady, playbackState);
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+            QuizMetrics.recordPlayerError(error);
+            if (mPlayer == mActivePlayer) {
+                mListener.onPlayerError(error);
+            } else {
+                // Let the next question prepare the sample from scratch.
+                mStandbySampleID = -1;
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+            if (mPlayer == mActivePlayer) {
+                QuizMetrics.DISCONTINUITIES.incrementAndGet();
+                mListener.onPositionDiscontinuity();
+            }
+        }
+    }
+}
@@ -18,26 +18,34 @@ package com.example.android.classicalmusicquiz;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
+import android.widget.Button;
 import android.widget.TextView;
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity
+        implements GameJournal.GameCheckListener {
 
 
     private static final String GAME_FINISHED = "game_finished";
 
+    private Button mResumeButton;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long createMs = SystemClock.uptimeMillis();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        StartupTrace.onActivityCreate(this, createMs);
 
         TextView highScoreTextView = (TextView) findViewById(R.id.highscoreText);
+        mResumeButton = (Button) findViewById(R.id.resumeButton);
 
-        // Get the high and max score.
+        // Get the high and max score. The catalog header has the sample count, so the catalog
+        // itself isn't loaded before the first frame.
         int highScore = QuizUtils.getHighScore(this);
-        int maxScore = Sample.getAllSampleIDs(this).size() - 1;
+        int maxScore = SampleCatalog.peekSize(this) - 1;
 
         // Set the high score text.
         String highScoreText = getString(R.string.high_score, highScore, maxScore);
@@ -58,11 +66,36 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // Offer to resume a game left in the journal, e.g. by the process being killed. The
+        // journal is read in the background, the button shows up once it has been.
+        GameJournal.getInstance(this).checkForGame(this, this);
+    }
+
+    @Override
+    public void onGameChecked(boolean hasGame) {
+        mResumeButton.setVisibility(hasGame ? View.VISIBLE : View.GONE);
+    }
+
+
     /**
      * The OnClick method for the New Game button that starts a new game.
      * @param view The New Game button.
      */
     public void newGame(View view) {
+        Intent quizIntent = new Intent(this, QuizActivity.class);
+        quizIntent.putExtra(QuizActivity.EXTRA_NEW_GAME, true);
+        startActivity(quizIntent);
+    }
+
+    /**
+     * The OnClick method for the Resume Game button that continues the game in the journal.
+     * @param view The Resume Game button.
+     */
+    public void resumeGame(View view) {
         Intent quizIntent = new Intent(this, QuizActivity.class);
         startActivity(quizIntent);
     }
@@ -0,0 +1,152 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.res.AssetManager;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Data source that serves asset:/// URIs straight from their {@link MappedAssets} mapping, so the
+ * extractor reads audio without going through AssetManager streams. Compressed assets and every
+ * other URI are passed to a fallback data source.
+ */
+class MappedAssetDataSource implements DataSource {
+
+    private static final String ASSET_SCHEME = "asset";
+    private static final String ANDROID_ASSET_PREFIX = "/android_asset/";
+
+    /**
+     * Creates mapped asset data sources that fall back to the sources of another factory.
+     */
+    static class Factory implements DataSource.Factory {
+
+        private final AssetManager mAssetManager;
+        private final DataSource.Factory mFallbackFactory;
+
+        Factory(AssetManager assetManager, DataSource.Factory fallbackFactory) {
+            mAssetManager = assetManager;
+            mFallbackFactory = fallbackFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new MappedAssetDataSource(mAssetManager, mFallbackFactory.createDataSource());
+        }
+    }
+
+    private final AssetManager mAssetManager;
+    private final DataSource mFallback;
+    private ByteBuffer mBuffer;
+    private DataSource mOpenedFallback;
+    private Uri mUri;
+
+
+    private MappedAssetDataSource(AssetManager assetManager, DataSource fallback) {
+        mAssetManager = assetManager;
+        mFallback = fallback;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        mUri = dataSpec.uri;
+        String assetName = getAssetName(dataSpec.uri);
+        if (assetName != null) {
+            try {
+                mBuffer = MappedAssets.map(mAssetManager, assetName);
+            } catch (FileNotFoundException e) {
+                // Compressed in the APK, so it can only be streamed.
+            }
+        }
+        if (mBuffer == null) {
+            mOpenedFallback = mFallback;
+            return mFallback.open(dataSpec);
+        }
+
+        if (dataSpec.position > mBuffer.limit()) {
+            mBuffer = null;
+            throw new EOFException();
+        }
+        mBuffer.position((int) dataSpec.position);
+        if (dataSpec.length != C.LENGTH_UNSET) {
+            if (dataSpec.length > mBuffer.remaining()) {
+                mBuffer = null;
+                throw new EOFException();
+            }
+            mBuffer.limit((int) (dataSpec.position + dataSpec.length));
+        }
+        return mBuffer.remaining();
+    }
+
+    /**
+     * Gets the asset an asset:/// or file:///android_asset/ URI points to.
+     * @return The asset name, or null if the URI isn't an asset.
+     */
+    private static String getAssetName(Uri uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return null;
+        }
+        if (ASSET_SCHEME.equals(uri.getScheme())) {
+            return path.startsWith("/") ? path.substring(1) : path;
+        }
+        if ((uri.getScheme() == null || "file".equals(uri.getScheme()))
+                && path.startsWith(ANDROID_ASSET_PREFIX)) {
+            return path.substring(ANDROID_ASSET_PREFIX.length());
+        }
+        return null;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (mOpenedFallback != null) {
+            return mOpenedFallback.read(buffer, offset, readLength);
+        }
+        if (readLength == 0) {
+            return 0;
+        }
+        if (!mBuffer.hasRemaining()) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        int bytesRead = Math.min(readLength, mBuffer.remaining());
+        mBuffer.get(buffer, offset, bytesRead);
+        return bytesRead;
+    }
+
+    @Override
+    public Uri getUri() {
+        return mUri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mUri = null;
+        mBuffer = null;
+        if (mOpenedFallback != null) {
+            mOpenedFallback = null;
+            mFallback.close();
+        }
+    }
+}
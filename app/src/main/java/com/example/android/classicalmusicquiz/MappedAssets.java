@@ -0,0 +1,135 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-maps assets that are stored uncompressed in the APK (see noCompress in build.gradle).
+ * Each asset is mapped once per process and every reader gets its own view of the mapping, so
+ * reads are plain memory copies with no stream buffers and no syscalls.
+ */
+final class MappedAssets {
+
+    private static final Map<String, ByteBuffer> sMappings = new HashMap<>();
+
+
+    private MappedAssets() {
+    }
+
+    /**
+     * Maps an asset, reusing the mapping if it was mapped before.
+     * @param assetManager The AssetManager of the application.
+     * @param assetName The name of the asset.
+     * @return A read-only view of the whole asset, positioned at its start.
+     * @throws FileNotFoundException If the asset is missing or compressed.
+     * @throws IOException If the asset can't be mapped.
+     */
+    static ByteBuffer map(AssetManager assetManager, String assetName) throws IOException {
+        ByteBuffer mapping;
+        synchronized (sMappings) {
+            mapping = sMappings.get(assetName);
+            if (mapping == null) {
+                mapping = mapUncached(assetManager, assetName);
+                sMappings.put(assetName, mapping);
+            }
+        }
+        return mapping.duplicate();
+    }
+
+    private static ByteBuffer mapUncached(AssetManager assetManager, String assetName)
+            throws IOException {
+        AssetFileDescriptor fileDescriptor = assetManager.openFd(assetName);
+        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
+        try {
+            // The mapping stays valid after the descriptor is closed.
+            return inputStream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(), fileDescriptor.getLength());
+        } finally {
+            inputStream.close();
+            fileDescriptor.close();
+        }
+    }
+
+    /**
+     * Opens an asset as a stream over its mapping, or through the AssetManager if it is
+     * compressed.
+     * @param assetManager The AssetManager of the application.
+     * @param assetName The name of the asset.
+     * @return A stream of the asset's content.
+     * @throws IOException If the asset is missing.
+     */
+    static InputStream open(AssetManager assetManager, String assetName) throws IOException {
+        try {
+            return new BufferInputStream(map(assetManager, assetName));
+        } catch (FileNotFoundException e) {
+            return assetManager.open(assetName);
+        }
+    }
+
+    /**
+     * Stream over a mapped buffer. Needs no buffering of its own.
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, mBuffer.remaining());
+            mBuffer.get(buffer, offset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.min(Math.max(count, 0), mBuffer.remaining());
+            mBuffer.position(mBuffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded on-disk cache for samples that aren't shipped with the app, e.g. ones served over HTTP.
+ * Least recently used content is evicted once the cache grows past its byte budget, and the cache
+ * index is persisted so cached samples survive restarts. Every open through the cache is counted
+ * as a hit (served entirely from disk) or a miss (read at least partly from upstream).
+ */
+class MediaCache {
+
+    private static final String CACHE_DIR_NAME = "media";
+    private static final long MAX_CACHE_BYTES = 64 * 1024 * 1024;
+    private static final long MAX_CACHE_FILE_BYTES = 2 * 1024 * 1024;
+
+    private static MediaCache sInstance;
+
+    private final SimpleCache mCache;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mEvictions = new AtomicLong();
+    private final AtomicLong mBytesFromCache = new AtomicLong();
+    private final AtomicLong mBytesFromUpstream = new AtomicLong();
+
+
+    /**
+     * Creates a cache. There must only be one instance per directory.
+     * @param cacheDir The directory to store content and the index in.
+     * @param maxBytes The byte budget after which content is evicted.
+     */
+    MediaCache(File cacheDir, long maxBytes) {
+        mCache = new SimpleCache(cacheDir,
+                new CountingEvictor(new LeastRecentlyUsedCacheEvictor(maxBytes)));
+    }
+
+    /**
+     * Gets the process-wide cache, stored in the app's cache directory. Its counters are exported
+     * with the {@link QuizMetrics}.
+     * @param context The application context.
+     * @return The cache.
+     */
+    static synchronized MediaCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MediaCache(new File(context.getCacheDir(), CACHE_DIR_NAME),
+                    MAX_CACHE_BYTES);
+            QuizMetrics.setMediaCache(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Tells whether a sample URI should go through the cache. Assets and local files are already
+     * on the device, so only network URIs are cached.
+     * @param uri The sample URI.
+     * @return true if the URI is fetched over the network.
+     */
+    static boolean isCacheable(Uri uri) {
+        String scheme = uri.getScheme();
+        return "http".equals(scheme) || "https".equals(scheme);
+    }
+
+    /**
+     * Wraps a data source factory so that its content is read from and written to the cache.
+     * @param upstreamFactory The factory for the data sources that fetch uncached content.
+     * @return The caching factory.
+     */
+    DataSource.Factory wrap(final DataSource.Factory upstreamFactory) {
+        return new DataSource.Factory() {
+            @Override
+            public DataSource createDataSource() {
+                CountingDataSource upstream =
+                        new CountingDataSource(upstreamFactory.createDataSource());
+                CacheDataSource cacheDataSource = new CacheDataSource(mCache, upstream,
+                        new FileDataSource(), new CacheDataSink(mCache, MAX_CACHE_FILE_BYTES),
+                        CacheDataSource.FLAG_BLOCK_ON_CACHE
+                                | CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                        new CacheDataSource.EventListener() {
+                            @Override
+                            public void onCachedBytesRead(long cacheSizeBytes,
+                                                          long cachedBytesRead) {
+                                mBytesFromCache.addAndGet(cachedBytesRead);
+                            }
+                        });
+                return new HitCountingDataSource(cacheDataSource, upstream);
+            }
+        };
+    }
+
+    long getHits() {
+        return mHits.get();
+    }
+
+    long getMisses() {
+        return mMisses.get();
+    }
+
+    long getEvictions() {
+        return mEvictions.get();
+    }
+
+    long getBytesFromCache() {
+        return mBytesFromCache.get();
+    }
+
+    long getBytesFromUpstream() {
+        return mBytesFromUpstream.get();
+    }
+
+    /**
+     * @return The bytes currently stored in the cache.
+     */
+    long getCacheSpace() {
+        return mCache.getCacheSpace();
+    }
+
+    /**
+     * Releases the cache by removing every span it holds, which deletes the span files. The
+     * SimpleCache in this ExoPlayer version has no release method of its own. The cache must not
+     * be used afterwards.
+     * @throws Cache.CacheException If a span could not be removed.
+     */
+    void release() throws Cache.CacheException {
+        for (String key : mCache.getKeys()) {
+            NavigableSet<CacheSpan> spans = mCache.getCachedSpans(key);
+            if (spans == null) {
+                continue;
+            }
+            for (CacheSpan span : spans) {
+                mCache.removeSpan(span);
+            }
+        }
+    }
+
+    /**
+     * Evictor that counts evictions and otherwise defers to another evictor. Spans are also
+     * removed when their files go missing or the cache is cleaned up, so only removals the evictor
+     * makes while it is given a new file or span count. SimpleCache calls the evictor under its
+     * own lock, so the flag below needs no synchronization of its own.
+     */
+    private class CountingEvictor implements CacheEvictor {
+
+        private final CacheEvictor mEvictor;
+        private boolean mEvicting;
+
+        CountingEvictor(CacheEvictor evictor) {
+            mEvictor = evictor;
+        }
+
+        @Override
+        public void onCacheInitialized() {
+            mEvictor.onCacheInitialized();
+        }
+
+        @Override
+        public void onStartFile(Cache cache, String key, long position, long length) {
+            mEvicting = true;
+            try {
+                mEvictor.onStartFile(cache, key, position, length);
+            } finally {
+                mEvicting = false;
+            }
+        }
+
+        @Override
+        public void onSpanAdded(Cache cache, CacheSpan span) {
+            mEvicting = true;
+            try {
+                mEvictor.onSpanAdded(cache, span);
+            } finally {
+                mEvicting = false;
+            }
+        }
+
+        @Override
+        public void onSpanRemoved(Cache cache, CacheSpan span) {
+            if (mEvicting) {
+                mEvictions.incrementAndGet();
+            }
+            mEvictor.onSpanRemoved(cache, span);
+        }
+
+        @Override
+        public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+            mEvictor.onSpanTouched(cache, oldSpan, newSpan);
+        }
+    }
+
+    /**
+     * Upstream data source that counts the bytes it fetches.
+     */
+    private class CountingDataSource implements DataSource {
+
+        private final DataSource mDataSource;
+        private long mBytesRead;
+
+        CountingDataSource(DataSource dataSource) {
+            mDataSource = dataSource;
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            return mDataSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            int bytesRead = mDataSource.read(buffer, offset, readLength);
+            if (bytesRead > 0) {
+                mBytesRead += bytesRead;
+                mBytesFromUpstream.addAndGet(bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public Uri getUri() {
+            return mDataSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDataSource.close();
+        }
+    }
+
+    /**
+     * Data source that records, on close, whether the content came entirely from the cache.
+     */
+    private class HitCountingDataSource implements DataSource {
+
+        private final DataSource mDataSource;
+        private final CountingDataSource mUpstream;
+        private boolean mOpened;
+
+        HitCountingDataSource(DataSource dataSource, CountingDataSource upstream) {
+            mDataSource = dataSource;
+            mUpstream = upstream;
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            mUpstream.mBytesRead = 0;
+            long length = mDataSource.open(dataSpec);
+            mOpened = true;
+            return length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            return mDataSource.read(buffer, offset, readLength);
+        }
+
+        @Override
+        public Uri getUri() {
+            return mDataSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mOpened) {
+                mOpened = false;
+                if (mUpstream.mBytesRead > 0) {
+                    mMisses.incrementAndGet();
+                } else {
+                    mHits.incrementAndGet();
+                }
+            }
+            mDataSource.close();
+        }
+    }
+}
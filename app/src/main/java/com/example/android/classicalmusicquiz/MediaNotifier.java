@@ -0,0 +1,180 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaButtonReceiver;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+import android.support.v7.app.NotificationCompat;
+
+/**
+ * Posts the media notification, and keeps the playback service in the foreground while it is
+ * playing. The notification only has two looks, playing and paused, so each is built once and
+ * reused. An update is only posted when it changes the look, and updates closer together than
+ * {@link #MIN_UPDATE_INTERVAL_MS} are coalesced into one, which keeps buffering transitions and
+ * bursts of state changes from reaching SystemUI. Every update is counted once in
+ * {@link QuizMetrics}: as posted, or as suppressed when a later update replaces it before it's
+ * posted or it wouldn't change the look.
+ */
+class MediaNotifier {
+
+    // startForeground() doesn't accept 0.
+    private static final int NOTIFICATION_ID = 1;
+    private static final long MIN_UPDATE_INTERVAL_MS = 500;
+
+    private final Service mService;
+    private final MediaSessionCompat.Token mSessionToken;
+    private final NotificationManager mNotificationManager;
+    private final PendingIntent mContentIntent;
+    private final Handler mHandler = new Handler();
+    private Notification mPlayingNotification;
+    private Notification mPausedNotification;
+    private boolean mPosted;
+    private boolean mPostedPlaying;
+    private boolean mPendingPlaying;
+    private boolean mPostScheduled;
+    private long mLastPostTimeMs;
+
+    private final Runnable mPostPending = new Runnable() {
+        @Override
+        public void run() {
+            mPostScheduled = false;
+            post(mPendingPlaying);
+        }
+    };
+
+
+    /**
+     * @param service The service that plays the media and posts the notification.
+     * @param sessionToken The token of the media session the notification controls.
+     */
+    MediaNotifier(Service service, MediaSessionCompat.Token sessionToken) {
+        mService = service;
+        mSessionToken = sessionToken;
+        mNotificationManager =
+                (NotificationManager) service.getSystemService(Context.NOTIFICATION_SERVICE);
+        mContentIntent = PendingIntent.getActivity(
+                service, 0, new Intent(service, QuizActivity.class), 0);
+    }
+
+    /**
+     * Shows the notification for a playback state, if that changes what it looks like.
+     * @param state The PlaybackState of the MediaSession.
+     */
+    void update(PlaybackStateCompat state) {
+        boolean playing = state.getState() == PlaybackStateCompat.STATE_PLAYING;
+        mPendingPlaying = playing;
+        if (mPostScheduled) {
+            // A coalesced update is already scheduled and will post this state instead of the
+            // one it was scheduled for.
+            QuizMetrics.NOTIFICATIONS_SUPPRESSED.incrementAndGet();
+            return;
+        }
+        long sinceLastPostMs = SystemClock.elapsedRealtime() - mLastPostTimeMs;
+        if (sinceLastPostMs < MIN_UPDATE_INTERVAL_MS) {
+            // Counted once the scheduled update posts or skips it.
+            mPostScheduled = true;
+            mHandler.postDelayed(mPostPending, MIN_UPDATE_INTERVAL_MS - sinceLastPostMs);
+            return;
+        }
+        post(playing);
+    }
+
+    private void post(boolean playing) {
+        if (mPosted && mPostedPlaying == playing) {
+            QuizMetrics.NOTIFICATIONS_SUPPRESSED.incrementAndGet();
+            return;
+        }
+        Notification notification = getNotification(playing);
+        if (playing) {
+            mService.startForeground(NOTIFICATION_ID, notification);
+        } else {
+            // Keep the notification, so playback can be resumed from it.
+            mService.stopForeground(false);
+            mNotificationManager.notify(NOTIFICATION_ID, notification);
+        }
+        mPosted = true;
+        mPostedPlaying = playing;
+        mLastPostTimeMs = SystemClock.elapsedRealtime();
+        QuizMetrics.NOTIFICATIONS_POSTED.incrementAndGet();
+    }
+
+    /**
+     * Removes the notification, taking the service out of the foreground, and drops any pending
+     * update.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mPostPending);
+        mPostScheduled = false;
+        mService.stopForeground(true);
+        mNotificationManager.cancel(NOTIFICATION_ID);
+        mPosted = false;
+    }
+
+    private Notification getNotification(boolean playing) {
+        if (playing) {
+            if (mPlayingNotification == null) {
+                mPlayingNotification = buildNotification(R.drawable.exo_controls_pause,
+                        R.string.pause);
+            }
+            return mPlayingNotification;
+        }
+        if (mPausedNotification == null) {
+            mPausedNotification = buildNotification(R.drawable.exo_controls_play, R.string.play);
+        }
+        return mPausedNotification;
+    }
+
+    /**
+     * Builds the Media Style notification.
+     * @param playPauseIcon The icon of the play/pause action.
+     * @param playPauseTitle The title of the play/pause action.
+     * @return The notification.
+     */
+    private Notification buildNotification(int playPauseIcon, int playPauseTitle) {
+        NotificationCompat.Action playPauseAction = new NotificationCompat.Action(
+                playPauseIcon, mService.getString(playPauseTitle),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(mService,
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
+
+        NotificationCompat.Action restartAction = new android.support.v4.app.NotificationCompat
+                .Action(R.drawable.exo_controls_previous, mService.getString(R.string.restart),
+                MediaButtonReceiver.buildMediaButtonPendingIntent
+                        (mService, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(mService);
+        builder.setContentTitle(mService.getString(R.string.guess))
+                .setContentText(mService.getString(R.string.notification_text))
+                .setContentIntent(mContentIntent)
+                .setSmallIcon(R.drawable.ic_music_note)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .addAction(restartAction)
+                .addAction(playPauseAction)
+                .setStyle(new NotificationCompat.MediaStyle()
+                        .setMediaSession(mSessionToken)
+                        .setShowActionsInCompactView(0,1));
+        return builder.build();
+    }
+}
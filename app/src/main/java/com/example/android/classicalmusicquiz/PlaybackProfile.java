@@ -0,0 +1,189 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How much the players buffer. The stock ExoPlayer settings suit long-form listening; the quiz
+ * plays short clips, so it wants playback to start on a small buffer and memory to stay low.
+ *
+ * <ul>
+ * <li>{@link #QUIZ}: starts after 250 ms of audio and buffers up to 10 s, at most 2 MB.</li>
+ * <li>{@link #LOW_MEMORY}: as quick to start, buffers up to 5 s in small allocations, at most
+ * 512 KB.</li>
+ * <li>{@link #DEFAULT}: ExoPlayer's defaults.</li>
+ * </ul>
+ *
+ * The profile comes from the PLAYBACK_PROFILE build config field, which the build checks; "auto"
+ * picks low memory on low RAM devices and quiz everywhere else.
+ */
+class PlaybackProfile {
+
+    static final PlaybackProfile DEFAULT = new PlaybackProfile("default",
+            DefaultLoadControl.DEFAULT_MIN_BUFFER_MS, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+            C.DEFAULT_BUFFER_SEGMENT_SIZE, 0);
+    static final PlaybackProfile QUIZ = new PlaybackProfile("quiz",
+            2000, 10000, 250, 1000, C.DEFAULT_BUFFER_SEGMENT_SIZE, 2 * 1024 * 1024);
+    static final PlaybackProfile LOW_MEMORY = new PlaybackProfile("low_memory",
+            1500, 5000, 250, 1000, 16 * 1024, 512 * 1024);
+
+    // Devices with at most this heap per app count as low memory before KitKat.
+    private static final int LOW_MEMORY_CLASS_MB = 64;
+
+    final String name;
+    final int minBufferMs;
+    final int maxBufferMs;
+    final long bufferForPlaybackMs;
+    final long bufferForPlaybackAfterRebufferMs;
+    final int allocationSize;
+    final int maxBufferBytes;
+
+    private PlaybackProfile(String name, int minBufferMs, int maxBufferMs,
+                            long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs,
+                            int allocationSize, int maxBufferBytes) {
+        this.name = name;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.allocationSize = allocationSize;
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    /**
+     * Picks the profile configured for the build, resolving "auto" by device class.
+     * @param context The application context.
+     * @return The profile to play with.
+     */
+    static PlaybackProfile forDevice(Context context) {
+        String name = BuildConfig.PLAYBACK_PROFILE;
+        for (PlaybackProfile profile : new PlaybackProfile[] {QUIZ, LOW_MEMORY, DEFAULT}) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+        // Otherwise it's "auto", since app/build.gradle rejects any other name.
+        return isLowMemoryDevice(context) ? LOW_MEMORY : QUIZ;
+    }
+
+    private static boolean isLowMemoryDevice(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && activityManager.isLowRamDevice()) {
+            return true;
+        }
+        return activityManager.getMemoryClass() <= LOW_MEMORY_CLASS_MB;
+    }
+
+    /**
+     * @return A new load control for one player.
+     */
+    ProfiledLoadControl createLoadControl() {
+        return new ProfiledLoadControl(this);
+    }
+
+    /**
+     * DefaultLoadControl with the profile's durations, which also stops loading once the
+     * profile's byte budget is allocated and remembers the most it allocated. The player calls
+     * it on its playback thread, while the peak is taken on the main thread.
+     */
+    static class ProfiledLoadControl implements LoadControl {
+
+        private final DefaultAllocator mAllocator;
+        private final DefaultLoadControl mLoadControl;
+        private final int mMaxBufferBytes;
+        private final AtomicInteger mPeakBytes = new AtomicInteger();
+
+        ProfiledLoadControl(PlaybackProfile profile) {
+            mAllocator = new DefaultAllocator(true, profile.allocationSize);
+            mLoadControl = new DefaultLoadControl(mAllocator, profile.minBufferMs,
+                    profile.maxBufferMs, profile.bufferForPlaybackMs,
+                    profile.bufferForPlaybackAfterRebufferMs);
+            mMaxBufferBytes = profile.maxBufferBytes;
+        }
+
+        /**
+         * Gets the most bytes the buffer held since the last call, and starts over.
+         * @return The peak buffer size in bytes.
+         */
+        int takePeakBytes() {
+            return Math.max(mPeakBytes.getAndSet(0), mAllocator.getTotalBytesAllocated());
+        }
+
+        @Override
+        public void onPrepared() {
+            mLoadControl.onPrepared();
+        }
+
+        @Override
+        public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                     TrackSelectionArray trackSelections) {
+            mLoadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+        }
+
+        @Override
+        public void onStopped() {
+            mLoadControl.onStopped();
+        }
+
+        @Override
+        public void onReleased() {
+            mLoadControl.onReleased();
+        }
+
+        @Override
+        public Allocator getAllocator() {
+            return mAllocator;
+        }
+
+        @Override
+        public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+            return mLoadControl.shouldStartPlayback(bufferedDurationUs, rebuffering);
+        }
+
+        @Override
+        public boolean shouldContinueLoading(long bufferedDurationUs) {
+            int allocatedBytes = mAllocator.getTotalBytesAllocated();
+            int peakBytes = mPeakBytes.get();
+            while (allocatedBytes > peakBytes
+                    && !mPeakBytes.compareAndSet(peakBytes, allocatedBytes)) {
+                peakBytes = mPeakBytes.get();
+            }
+            if (mMaxBufferBytes > 0 && allocatedBytes >= mMaxBufferBytes) {
+                return false;
+            }
+            return mLoadControl.shouldContinueLoading(bufferedDurationUs);
+        }
+    }
+}
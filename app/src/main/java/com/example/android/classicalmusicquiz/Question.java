@@ -0,0 +1,60 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+/**
+ * A generated question: the possible answers, in button order, and the correct one. Questions
+ * are reused from one round to the next, so the answer buffer is allocated once.
+ */
+class Question {
+
+    static final int NUM_ANSWERS = 4;
+
+    private final int[] mSampleIDs = new int[NUM_ANSWERS];
+    private int mCount;
+    private int mAnswerSampleID = -1;
+
+
+    /**
+     * @return The answer buffer. Only the first {@link #getCount()} entries are valid.
+     */
+    int[] getSampleIDs() {
+        return mSampleIDs;
+    }
+
+    /**
+     * Sets how many answers are valid and which one is correct.
+     * @param count The number of possible answers.
+     * @param answerSampleID The ID of the correct answer.
+     */
+    void set(int count, int answerSampleID) {
+        mCount = count;
+        mAnswerSampleID = answerSampleID;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    int getSampleID(int index) {
+        return mSampleIDs[index];
+    }
+
+    int getAnswerSampleID() {
+        return mAnswerSampleID;
+    }
+}
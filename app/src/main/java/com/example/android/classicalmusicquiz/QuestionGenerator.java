@@ -0,0 +1,86 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Random;
+
+/**
+ * Generates questions from a pool of sample IDs without allocating. The pool is an int array
+ * whose first mSize slots hold the samples that haven't been asked yet. Each question runs a
+ * partial Fisher-Yates shuffle that swaps NUM_ANSWERS random samples to the end of the live
+ * region, so it costs O(NUM_ANSWERS) whatever the size of the catalog, and the asked sample is
+ * dropped with a single swap when the next question is generated.
+ */
+class QuestionGenerator {
+
+    private final int[] mPool;
+    private final Random mRandom;
+    private int mSize;
+    private int mAskedPosition = -1;
+
+    /**
+     * @param sampleIDs The IDs of all samples in the game. The array is copied.
+     * @param random The random number generator; pass a seeded one for reproducible games.
+     */
+    QuestionGenerator(int[] sampleIDs, Random random) {
+        mPool = sampleIDs.clone();
+        mSize = mPool.length;
+        mRandom = random;
+    }
+
+    /**
+     * Removes the answer of the previous question from the pool, then fills in the next
+     * question. Every question answered removes its answer, whatever the user picked.
+     * @param question The question to overwrite.
+     */
+    void next(Question question) {
+        if (mAskedPosition >= 0) {
+            mSize--;
+            swap(mAskedPosition, mSize);
+            mAskedPosition = -1;
+        }
+
+        int count = Math.min(Question.NUM_ANSWERS, mSize);
+        int[] sampleIDs = question.getSampleIDs();
+        for (int i = 0; i < count; i++) {
+            int last = mSize - 1 - i;
+            swap(mRandom.nextInt(last + 1), last);
+            sampleIDs[i] = mPool[last];
+        }
+
+        if (count == 0) {
+            question.set(0, -1);
+            return;
+        }
+        int answerIndex = mRandom.nextInt(count);
+        mAskedPosition = mSize - 1 - answerIndex;
+        question.set(count, sampleIDs[answerIndex]);
+    }
+
+    /**
+     * @return The number of samples that haven't been asked, including the current answer.
+     */
+    int getRemainingCount() {
+        return mSize;
+    }
+
+    private void swap(int i, int j) {
+        int tmp = mPool[i];
+        mPool[i] = mPool[j];
+        mPool[j] = tmp;
+    }
+}
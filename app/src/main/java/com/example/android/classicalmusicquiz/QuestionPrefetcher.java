@@ -0,0 +1,110 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prepares everything the click path needs while the clip is playing: the portraits of all
+ * candidate composers are decoded into the {@link ArtworkCache}, and the samples of the next
+ * question are loaded. Revealing the answer and moving on then only read data that is already in
+ * memory.
+ */
+class QuestionPrefetcher {
+
+    /**
+     * Callback for when the next question has been prepared, so its clip can be pre-buffered.
+     */
+    interface Listener {
+        /**
+         * Called on the main thread.
+         * @param nextQuestion The question passed to {@link #start(Question, Question)}.
+         */
+        void onNextQuestionReady(Question nextQuestion);
+    }
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Future<?> mPrefetch;
+    private int mGeneration;
+
+
+    QuestionPrefetcher(Context context, Listener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+    }
+
+    /**
+     * Starts preparing the reveal of the current question and the next question. The questions
+     * are reused by the session, so the background work reads copies of their samples and may
+     * safely outlive them.
+     * @param question The question being played.
+     * @param nextQuestion The question that follows it.
+     */
+    void start(Question question, final Question nextQuestion) {
+        cancel();
+        final int generation = mGeneration;
+        final int[] sampleIDs = Arrays.copyOf(question.getSampleIDs(), question.getCount());
+        final int[] nextSampleIDs =
+                Arrays.copyOf(nextQuestion.getSampleIDs(), nextQuestion.getCount());
+
+        mPrefetch = sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ArtworkCache artworkCache = ArtworkCache.getInstance(mContext);
+                SampleCatalog catalog = SampleCatalog.getInstance(mContext);
+                Sample[] samples = new Sample[Question.NUM_ANSWERS];
+                catalog.getSamplesByIDs(sampleIDs, sampleIDs.length, samples);
+                for (int i = 0; i < sampleIDs.length; i++) {
+                    artworkCache.getArtForSample(mContext, samples[i]);
+                }
+                catalog.getSamplesByIDs(nextSampleIDs, nextSampleIDs.length, samples);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Drop results that were cancelled while they were posted, since
+                        // nextQuestion may have been rewritten by then.
+                        if (generation == mGeneration) {
+                            mListener.onNextQuestionReady(nextQuestion);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any pending work, e.g. when the screen goes away.
+     */
+    void cancel() {
+        mGeneration++;
+        if (mPrefetch != null) {
+            mPrefetch.cancel(false);
+            mPrefetch = null;
+        }
+    }
+}
@@ -16,64 +16,96 @@
 
 package com.example.android.classicalmusicquiz;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
-import android.content.Context;
+import android.content.ComponentName;
 import android.content.Intent;
-import android.graphics.BitmapFactory;
+import android.content.ServiceConnection;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.media.session.MediaButtonReceiver;
-import android.support.v4.media.session.MediaSessionCompat;
-import android.support.v4.media.session.PlaybackStateCompat;
 import android.support.v7.app.AppCompatActivity;
-import android.support.v7.app.NotificationCompat;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.Toast;
 
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.ExoPlayerFactory;
-import com.google.android.exoplayer2.LoadControl;
-import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
-import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
-import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
-import java.util.ArrayList;
+import java.util.Random;
 
-public class QuizActivity extends AppCompatActivity implements View.OnClickListener, ExoPlayer.EventListener {
+public class QuizActivity extends AppCompatActivity implements View.OnClickListener, ExoPlayer.EventListener,
+        QuestionPrefetcher.Listener {
+
+    /**
+     * Intent extra that starts a new game even if the journal holds one to resume.
+     */
+    static final String EXTRA_NEW_GAME = "new_game";
 
     private static final int CORRECT_ANSWER_DELAY_MILLIS = 1000;
-    private static final String REMAINING_SONGS_KEY = "remaining_songs";
     private static final String TAG = QuizActivity.class.getSimpleName();
+    private static final String SESSION_TOKEN_KEY = "session_token";
+    private static final String ASKED_SAMPLES_KEY = "asked_samples";
+
+    // The quiz alternates between asking a question and revealing its answer.
+    private static final int STATE_QUESTION = 0;
+    private static final int STATE_REVEAL = 1;
+
     private int[] mButtonIDs = {R.id.buttonA, R.id.buttonB, R.id.buttonC, R.id.buttonD};
-    private ArrayList<Integer> mRemainingSampleIDs;
-    private ArrayList<Integer> mQuestionSampleIDs;
-    private int mAnswerSampleID;
+    private SampleCatalog mCatalog;
+    private final Sample[] mSamples = new Sample[Question.NUM_ANSWERS];
+    private Sample mAnswerSample;
+    private GameSession mSession;
+    private long mSessionToken;
+    private GameJournal mJournal;
+    private boolean mPrefetchStarted;
+    private long mClipStartMs;
+    private LatencyHistogram mFrameHistogram;
+    private long mFrameStartMs;
+    private final ViewTreeObserver.OnPreDrawListener mFrameListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    getWindow().getDecorView().getViewTreeObserver()
+                            .removeOnPreDrawListener(this);
+                    mFrameHistogram.record(SystemClock.elapsedRealtime() - mFrameStartMs);
+                    return true;
+                }
+            };
     private int mCurrentScore;
     private int mHighScore;
     private Button[] mButtons;
-    private SimpleExoPlayer mExoPlayer;
+    private ColorStateList mButtonTextColors;
+    private int mState;
+    private final Handler mHandler = new Handler();
     private SimpleExoPlayerView mPlayerView;
-    private static MediaSessionCompat mMediaSession;
-    private PlaybackStateCompat.Builder mStateBuilder;
-    private NotificationManager mNotificationManager;
+    private ArtworkCache mArtworkCache;
+    private Bitmap mArtwork;
+    private QuestionPrefetcher mPrefetcher;
+    private QuizPlaybackService mService;
+    private final ServiceConnection mServiceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            mService = ((QuizPlaybackService.LocalBinder) binder).getService();
+            mService.setListener(QuizActivity.this);
+            playQuestion();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            mService = null;
+        }
+    };
 
 
     @Override
@@ -82,197 +114,207 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         setContentView(R.layout.activity_quiz);
 
 
-        // Initialize the player view.
+        // Initialize the player view, and decode the artwork to its size once it is laid out.
         mPlayerView = (SimpleExoPlayerView) findViewById(R.id.playerView);
+        mArtworkCache = ArtworkCache.getInstance(this);
+        mPlayerView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                mArtworkCache.setTargetSize(right - left, bottom - top);
+            }
+        });
 
 
-        boolean isNewGame = !getIntent().hasExtra(REMAINING_SONGS_KEY);
-
-        // If it's a new game, set the current score to 0 and load all samples.
-        if (isNewGame) {
+        // Pick up the game this activity was showing, or the one a killed process left in the
+        // journal, or start a new one with a score of 0 and all samples.
+        mCatalog = SampleCatalog.getInstance(this);
+        mJournal = GameJournal.getInstance(this);
+        if (savedInstanceState != null) {
+            restoreSession(savedInstanceState);
+        } else if (!getIntent().getBooleanExtra(EXTRA_NEW_GAME, false)) {
+            resumeFromJournal();
+        }
+        if (mSession == null) {
             QuizUtils.setCurrentScore(this, 0);
-            mRemainingSampleIDs = Sample.getAllSampleIDs(this);
-            // Otherwise, get the remaining songs from the Intent.
-        } else {
-            mRemainingSampleIDs = getIntent().getIntegerArrayListExtra(REMAINING_SONGS_KEY);
+            mSession = GameSession.create(mCatalog, new Random());
+            mSessionToken = SessionStore.put(mSession);
+            mJournal.start(mCatalog.size(), mSession.getAskedBits(), 0);
+        } else if (mSession.isAnswered()) {
+            // The answer was already revealed and scored.
+            mSession.advance();
         }
 
         // Get current and high scores.
         mCurrentScore = QuizUtils.getCurrentScore(this);
         mHighScore = QuizUtils.getHighScore(this);
 
-        // Generate a question and get the correct answer.
-        mQuestionSampleIDs = QuizUtils.generateQuestion(mRemainingSampleIDs);
-        mAnswerSampleID = QuizUtils.getCorrectAnswerID(mQuestionSampleIDs);
+        mPrefetcher = new QuestionPrefetcher(this, this);
 
-        // Load the question mark as the background image until the user answers the question.
-        mPlayerView.setDefaultArtwork(BitmapFactory.decodeResource
-                (getResources(), R.drawable.question_mark));
+        // The buttons live for the whole game. The player and the Media Session live in the
+        // playback service, which is started for the game and keeps playing through
+        // configuration changes.
+        mButtons = initializeButtons();
+        Intent serviceIntent = new Intent(this, QuizPlaybackService.class);
+        startService(serviceIntent);
+        serviceIntent.setAction(QuizPlaybackService.ACTION_BIND_LOCAL);
+        bindService(serviceIntent, mServiceConnection, BIND_AUTO_CREATE);
 
-        // If there is only one answer left, end the game.
-        if (mQuestionSampleIDs.size() < 2) {
-            QuizUtils.endGame(this);
-            finish();
-        }
-
-        // Initialize the buttons with the composers names.
-        mButtons = initializeButtons(mQuestionSampleIDs);
-
-        // Initialize the Media Session.
-        initializeMediaSession();
-
-        Sample answerSample = Sample.getSampleByID(this, mAnswerSampleID);
+        showQuestion();
+    }
 
-        if (answerSample == null) {
-            Toast.makeText(this, getString(R.string.sample_not_found_error),
-                    Toast.LENGTH_SHORT).show();
+    /**
+     * Finds the session of the previous instance of this activity. If the process was killed in
+     * the meantime, the game is resumed from the journal, or failing that from the saved bitset
+     * of asked samples.
+     * @param savedInstanceState The state saved by {@link #onSaveInstanceState(Bundle)}.
+     */
+    private void restoreSession(Bundle savedInstanceState) {
+        mSessionToken = savedInstanceState.getLong(SESSION_TOKEN_KEY);
+        mSession = SessionStore.get(mSessionToken);
+        if (mSession != null) {
             return;
         }
 
-        // Initialize the player.
-        initializePlayer(Uri.parse(answerSample.getUri()));
+        resumeFromJournal();
+        if (mSession == null) {
+            // The journal is gone, so start a new one for the saved game.
+            mSession = GameSession.restore(mCatalog,
+                    savedInstanceState.getLongArray(ASKED_SAMPLES_KEY), new Random());
+            if (mSession != null) {
+                mSessionToken = SessionStore.put(mSession);
+                mJournal.start(mCatalog.size(), mSession.getAskedBits(),
+                        QuizUtils.getCurrentScore(this));
+            }
+        }
     }
 
     /**
-     * Initializes the Media Session to be enabled with media buttons, transport controls, callbacks
-     * and media controller.
+     * Resumes the game a previous process left in the journal, if there is one, and keeps
+     * journaling it in place.
      */
-    private void initializeMediaSession() {
-
-        // Create a MediaSessionCompat.
-        mMediaSession = new MediaSessionCompat(this, TAG);
+    private void resumeFromJournal() {
+        GameJournal.State state = mJournal.read(mCatalog.size());
+        if (state == null) {
+            return;
+        }
+        mSession = GameSession.restore(mCatalog, state.askedBits, new Random());
+        if (mSession != null) {
+            QuizUtils.setCurrentScore(this, state.score);
+            mSessionToken = SessionStore.put(mSession);
+            mJournal.resume(state);
+        }
+    }
 
-        // Enable callbacks from MediaButtons and TransportControls.
-        mMediaSession.setFlags(
-                MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
-                        MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(SESSION_TOKEN_KEY, mSessionToken);
+        outState.putLongArray(ASKED_SAMPLES_KEY, mSession.getAskedBits());
+    }
 
-        // Do not let MediaButtons restart the player when the app is not visible.
-        mMediaSession.setMediaButtonReceiver(null);
+    /**
+     * Moves to the question state for the current question of the session: rebinds the buttons
+     * and artwork in place and starts playing the answer once the playback service is connected.
+     * Ends the game if there aren't enough samples left.
+     */
+    private void showQuestion() {
+        mPrefetchStarted = false;
+        mClipStartMs = SystemClock.elapsedRealtime();
+        Question question = mSession.getQuestion();
 
-        // Set an initial PlaybackState with ACTION_PLAY, so media buttons can start the player.
-        mStateBuilder = new PlaybackStateCompat.Builder()
-                .setActions(
-                        PlaybackStateCompat.ACTION_PLAY |
-                                PlaybackStateCompat.ACTION_PAUSE |
-                                PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
-                                PlaybackStateCompat.ACTION_PLAY_PAUSE);
+        // If there is only one answer left, end the game.
+        if (question.getCount() < 2) {
+            stopPlayback();
+            mJournal.finish();
+            QuizUtils.endGame(this);
+            finish();
+            return;
+        }
 
-        mMediaSession.setPlaybackState(mStateBuilder.build());
+        mState = STATE_QUESTION;
+        mJournal.questionAsked(mSession.getAnswerPosition());
 
+        // Load the question mark as the background image until the user answers the question.
+        showArtwork(mArtworkCache.acquirePlaceholder());
+
+        // Look up the possible answers, which include the answer and its art, in one pass.
+        mCatalog.getSamplesByIDs(question.getSampleIDs(), question.getCount(), mSamples);
+        mAnswerSample = null;
+        for (int i = 0; i < question.getCount(); i++) {
+            if (question.getSampleID(i) == question.getAnswerSampleID()) {
+                mAnswerSample = mSamples[i];
+            }
+        }
 
-        // MySessionCallback has methods that handle callbacks from a media controller.
-        mMediaSession.setCallback(new MySessionCallback());
+        // Set the buttons to the composers names.
+        bindButtons(question);
 
-        // Start the Media Session since the activity is active.
-        mMediaSession.setActive(true);
+        if (mAnswerSample == null) {
+            Toast.makeText(this, getString(R.string.sample_not_found_error),
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
 
+        playQuestion();
     }
 
     /**
-     * Initializes the button to the correct views, and sets the text to the composers names,
-     * and set's the OnClick listener to the buttons.
-     *
-     * @param answerSampleIDs The IDs of the possible answers to the question.
-     * @return The Array of initialized buttons.
+     * Plays the answer of the current question, on the standby player if it was already
+     * buffered. After a configuration change the service is usually still playing it, and
+     * carries on.
      */
-    private Button[] initializeButtons(ArrayList<Integer> answerSampleIDs) {
-        Button[] buttons = new Button[mButtonIDs.length];
-        for (int i = 0; i < answerSampleIDs.size(); i++) {
-            Button currentButton = (Button) findViewById(mButtonIDs[i]);
-            Sample currentSample = Sample.getSampleByID(this, answerSampleIDs.get(i));
-            buttons[i] = currentButton;
-            currentButton.setOnClickListener(this);
-            if (currentSample != null) {
-                currentButton.setText(currentSample.getComposer());
-            }
+    private void playQuestion() {
+        if (mService == null || mState != STATE_QUESTION || mAnswerSample == null) {
+            return;
         }
-        return buttons;
+        mPlayerView.setPlayer(mService.play(mAnswerSample));
     }
 
-
     /**
-     * Shows Media Style notification, with actions that depend on the current MediaSession
-     * PlaybackState.
-     * @param state The PlaybackState of the MediaSession.
+     * Pre-buffers the clip of the next question while the current one plays.
+     * @param nextQuestion The prefetched next question.
      */
-    private void showNotification(PlaybackStateCompat state) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this);
-
-        int icon;
-        String play_pause;
-        if(state.getState() == PlaybackStateCompat.STATE_PLAYING){
-            icon = R.drawable.exo_controls_pause;
-            play_pause = getString(R.string.pause);
-        } else {
-            icon = R.drawable.exo_controls_play;
-            play_pause = getString(R.string.play);
+    @Override
+    public void onNextQuestionReady(Question nextQuestion) {
+        Sample nextAnswerSample = mCatalog.getSample(nextQuestion.getAnswerSampleID());
+        if (nextAnswerSample != null && mService != null) {
+            mService.preload(nextAnswerSample);
         }
-
-
-        NotificationCompat.Action playPauseAction = new NotificationCompat.Action(
-                icon, play_pause,
-                MediaButtonReceiver.buildMediaButtonPendingIntent(this,
-                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
-
-        NotificationCompat.Action restartAction = new android.support.v4.app.NotificationCompat
-                .Action(R.drawable.exo_controls_previous, getString(R.string.restart),
-                MediaButtonReceiver.buildMediaButtonPendingIntent
-                        (this, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
-
-        PendingIntent contentPendingIntent = PendingIntent.getActivity
-                (this, 0, new Intent(this, QuizActivity.class), 0);
-
-        builder.setContentTitle(getString(R.string.guess))
-                .setContentText(getString(R.string.notification_text))
-                .setContentIntent(contentPendingIntent)
-                .setSmallIcon(R.drawable.ic_music_note)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .addAction(restartAction)
-                .addAction(playPauseAction)
-                .setStyle(new NotificationCompat.MediaStyle()
-                        .setMediaSession(mMediaSession.getSessionToken())
-                        .setShowActionsInCompactView(0,1));
-
-
-        mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        mNotificationManager.notify(0, builder.build());
     }
 
-
     /**
-     * Initialize ExoPlayer.
-     * @param mediaUri The URI of the sample to play.
+     * Initializes the button to the correct views and set's the OnClick listener to the buttons.
+     *
+     * @return The Array of initialized buttons.
      */
-    private void initializePlayer(Uri mediaUri) {
-        if (mExoPlayer == null) {
-            // Create an instance of the ExoPlayer.
-            TrackSelector trackSelector = new DefaultTrackSelector();
-            LoadControl loadControl = new DefaultLoadControl();
-            mExoPlayer = ExoPlayerFactory.newSimpleInstance(this, trackSelector, loadControl);
-            mPlayerView.setPlayer(mExoPlayer);
-
-            // Set the ExoPlayer.EventListener to this activity.
-            mExoPlayer.addListener(this);
-            
-            // Prepare the MediaSource.
-            String userAgent = Util.getUserAgent(this, "ClassicalMusicQuiz");
-            MediaSource mediaSource = new ExtractorMediaSource(mediaUri, new DefaultDataSourceFactory(
-                    this, userAgent), new DefaultExtractorsFactory(), null, null);
-            mExoPlayer.prepare(mediaSource);
-            mExoPlayer.setPlayWhenReady(true);
+    private Button[] initializeButtons() {
+        Button[] buttons = new Button[mButtonIDs.length];
+        for (int i = 0; i < mButtonIDs.length; i++) {
+            buttons[i] = (Button) findViewById(mButtonIDs[i]);
+            buttons[i].setOnClickListener(this);
         }
+        mButtonTextColors = buttons[0].getTextColors();
+        return buttons;
     }
 
-
     /**
-     * Release ExoPlayer.
+     * Resets the buttons from the previous answer and sets the text to the composers names of the
+     * samples looked up for the question. Buttons without a possible answer are blanked and
+     * disabled.
+     *
+     * @param question The question whose possible answers to show.
      */
-    private void releasePlayer() {
-        mNotificationManager.cancelAll();
-        mExoPlayer.stop();
-        mExoPlayer.release();
-        mExoPlayer = null;
+    private void bindButtons(Question question) {
+        for (int i = 0; i < mButtons.length; i++) {
+            Button currentButton = mButtons[i];
+            currentButton.getBackground().clearColorFilter();
+            currentButton.setTextColor(mButtonTextColors);
+
+            Sample currentSample = i < question.getCount() ? mSamples[i] : null;
+            currentButton.setEnabled(currentSample != null);
+            currentButton.setText(currentSample != null ? currentSample.getComposer() : null);
+        }
     }
 
 
@@ -286,7 +328,14 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     @Override
     public void onClick(View v) {
 
+        // Ignore clicks that land while the previous answer is still being revealed.
+        if (mState != STATE_QUESTION) {
+            return;
+        }
+        mState = STATE_REVEAL;
+
         // Show the correct answer.
+        measureUntilNextFrame(QuizMetrics.CLICK_TO_REVEAL_MS);
         showCorrectAnswer();
 
         // Get the button that was pressed.
@@ -301,10 +350,16 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         }
 
         // Get the ID of the sample that the user selected.
-        int userAnswerSampleID = mQuestionSampleIDs.get(userAnswerIndex);
+        Question question = mSession.getQuestion();
+        int userAnswerSampleID = question.getSampleID(userAnswerIndex);
+        int answerPosition = mSession.markAnswered();
+        boolean correct = QuizUtils.userCorrect(question.getAnswerSampleID(), userAnswerSampleID);
+        ScoreStore.getInstance(this).recordAnswer(correct,
+                SystemClock.elapsedRealtime() - mClipStartMs);
+        mJournal.answerGiven(answerPosition, correct ? 1 : 0);
 
         // If the user is correct, increase there score and update high score.
-        if (QuizUtils.userCorrect(mAnswerSampleID, userAnswerSampleID)) {
+        if (correct) {
             mCurrentScore++;
             QuizUtils.setCurrentScore(this, mCurrentScore);
             if (mCurrentScore > mHighScore) {
@@ -313,35 +368,70 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             }
         }
 
-        // Remove the answer sample from the list of all samples, so it doesn't get asked again.
-        mRemainingSampleIDs.remove(Integer.valueOf(mAnswerSampleID));
-
         // Wait some time so the user can see the correct answer, then go to the next question.
-        final Handler handler = new Handler();
-        handler.postDelayed(new Runnable() {
+        mHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                mExoPlayer.stop();
-                Intent nextQuestionIntent = new Intent(QuizActivity.this, QuizActivity.class);
-                nextQuestionIntent.putExtra(REMAINING_SONGS_KEY, mRemainingSampleIDs);
-                finish();
-                startActivity(nextQuestionIntent);
+                measureUntilNextFrame(QuizMetrics.QUESTION_TRANSITION_MS);
+                // Drop the prefetch's callback, which refers to the question being rewritten.
+                mPrefetcher.cancel();
+                ScoreStore.getInstance(QuizActivity.this).flush();
+                mJournal.flush();
+                mSession.advance();
+                showQuestion();
             }
         }, CORRECT_ANSWER_DELAY_MILLIS);
     }
 
+    /**
+     * Records the time from now until the next frame is drawn, i.e. until the user sees the
+     * result of what the main thread is about to do.
+     * @param histogram The histogram to record the latency in.
+     */
+    private void measureUntilNextFrame(LatencyHistogram histogram) {
+        ViewTreeObserver observer = getWindow().getDecorView().getViewTreeObserver();
+        observer.removeOnPreDrawListener(mFrameListener);
+        mFrameHistogram = histogram;
+        mFrameStartMs = SystemClock.elapsedRealtime();
+        observer.addOnPreDrawListener(mFrameListener);
+    }
+
+    /**
+     * Stops the playback service for good. It may not be connected yet, e.g. when the game ends
+     * right after a configuration change, so it is then stopped through its start intent.
+     */
+    private void stopPlayback() {
+        if (mService != null) {
+            mService.stop();
+        } else {
+            stopService(new Intent(this, QuizPlaybackService.class));
+        }
+    }
+
+    /**
+     * Shows an acquired portrait on the player view and releases the one it replaces.
+     * @param artwork The portrait, acquired from the {@link ArtworkCache}.
+     */
+    private void showArtwork(Bitmap artwork) {
+        mPlayerView.setDefaultArtwork(artwork);
+        mArtworkCache.release(mArtwork);
+        mArtwork = artwork;
+    }
+
     /**
      * Disables the buttons and changes the background colors and player art to
      * show the correct answer.
      */
     private void showCorrectAnswer() {
-        mPlayerView.setDefaultArtwork(Sample.getComposerArtBySampleID(this, mAnswerSampleID));
-        for (int i = 0; i < mQuestionSampleIDs.size(); i++) {
-            int buttonSampleID = mQuestionSampleIDs.get(i);
+        Question question = mSession.getQuestion();
+        int answerSampleID = question.getAnswerSampleID();
+        showArtwork(mArtworkCache.acquireArtForSample(this, mAnswerSample));
+        for (int i = 0; i < question.getCount(); i++) {
+            int buttonSampleID = question.getSampleID(i);
 
             mButtons[i].setEnabled(false);
 
-            if (buttonSampleID == mAnswerSampleID) {
+            if (buttonSampleID == answerSampleID) {
                 mButtons[i].getBackground().setColorFilter(ContextCompat.getColor
                                 (this, android.R.color.holo_green_light),
                         PorterDuff.Mode.MULTIPLY);
@@ -357,13 +447,37 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
 
 
     /**
-     * Release the player when the activity is destroyed.
+     * Saves the scores of the questions answered so far, checkpoints the game journal and
+     * exports the metrics.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        ScoreStore.getInstance(this).flush();
+        mJournal.checkpoint();
+        QuizMetrics.export(this);
+    }
+
+    /**
+     * Detaches from the playback service when the activity is destroyed, and stops it if the
+     * game is over or abandoned.
      */
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        releasePlayer();
-        mMediaSession.setActive(false);
+        mHandler.removeCallbacksAndMessages(null);
+        mPrefetcher.cancel();
+        mPlayerView.setPlayer(null);
+        showArtwork(null);
+        if (mService != null) {
+            mService.setListener(null);
+        }
+        if (isFinishing()) {
+            stopPlayback();
+            SessionStore.remove(mSessionToken);
+            mJournal.finish();
+        }
+        unbindService(mServiceConnection);
     }
 
     
@@ -382,8 +496,8 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     /**
-     * Method that is called when the ExoPlayer state changes. Used to update the MediaSession
-     * PlayBackState to keep in sync, and post the media notification.
+     * Method that is called when the ExoPlayer state changes. Used to start preparing the next
+     * question once the clip plays; the service keeps the MediaSession in sync.
      * @param playWhenReady true if ExoPlayer is playing, false if it's paused.
      * @param playbackState int describing the state of ExoPlayer. Can be STATE_READY, STATE_IDLE,
      *                      STATE_BUFFERING, or STATE_ENDED.
@@ -391,55 +505,23 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
         if((playbackState == ExoPlayer.STATE_READY) && playWhenReady){
-            mStateBuilder.setState(PlaybackStateCompat.STATE_PLAYING,
-                    mExoPlayer.getCurrentPosition(), 1f);
-        } else if((playbackState == ExoPlayer.STATE_READY)){
-            mStateBuilder.setState(PlaybackStateCompat.STATE_PAUSED,
-                    mExoPlayer.getCurrentPosition(), 1f);
+            // The clip started, pick the next question and prepare it and the reveal in the
+            // background.
+            if (!mPrefetchStarted) {
+                mPrefetchStarted = true;
+                mClipStartMs = SystemClock.elapsedRealtime();
+                mPrefetcher.start(mSession.getQuestion(), mSession.getNextQuestion());
+            }
         }
-        mMediaSession.setPlaybackState(mStateBuilder.build());
-        showNotification(mStateBuilder.build());
     }
 
     @Override
     public void onPlayerError(ExoPlaybackException error) {
+        // Counted in QuizMetrics by the player, log the cause for debugging.
+        Log.e(TAG, "Playback failed", error);
     }
 
     @Override
     public void onPositionDiscontinuity() {
     }
-
-    /**
-     * Media Session Callbacks, where all external clients control the player.
-     */
-    private class MySessionCallback extends MediaSessionCompat.Callback {
-        @Override
-        public void onPlay() {
-            mExoPlayer.setPlayWhenReady(true);
-        }
-
-        @Override
-        public void onPause() {
-            mExoPlayer.setPlayWhenReady(false);
-        }
-
-        @Override
-        public void onSkipToPrevious() {
-            mExoPlayer.seekTo(0);
-        }
-    }
-
-    /**
-     * Broadcast Receiver registered to receive the MEDIA_BUTTON intent coming from clients.
-     */
-    public static class MediaReceiver extends BroadcastReceiver {
-
-        public MediaReceiver() {
-        }
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            MediaButtonReceiver.handleIntent(mMediaSession, intent);
-        }
-    }
 }
@@ -0,0 +1,177 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of playback and quiz metrics. Counters are atomic longs and latencies go
+ * into {@link LatencyHistogram}s, so recording takes no locks and allocates nothing. A text
+ * snapshot of everything is written to files/metrics.txt by {@link #export(Context)}; pull it with
+ * {@code adb shell run-as com.example.android.classicalmusicquiz cat files/metrics.txt}.
+ */
+class QuizMetrics {
+
+    private static final String TAG = QuizMetrics.class.getSimpleName();
+    private static final String FILE_NAME = "metrics.txt";
+
+    static final LatencyHistogram TIME_TO_FIRST_AUDIO_MS =
+            new LatencyHistogram("time_to_first_audio_ms");
+    static final LatencyHistogram REBUFFER_MS = new LatencyHistogram("rebuffer_ms");
+    static final LatencyHistogram CLICK_TO_REVEAL_MS = new LatencyHistogram("click_to_reveal_ms");
+    static final LatencyHistogram QUESTION_TRANSITION_MS =
+            new LatencyHistogram("question_transition_ms");
+    // Memory per question: the most the player buffered, and the most native heap seen on player
+    // events.
+    static final LatencyHistogram BUFFER_PEAK_KB = new LatencyHistogram("buffer_peak_kb");
+    static final LatencyHistogram NATIVE_HEAP_KB = new LatencyHistogram("native_heap_kb");
+
+    static final AtomicLong REBUFFERS = new AtomicLong();
+    static final AtomicLong SOURCE_ERRORS = new AtomicLong();
+    static final AtomicLong RENDERER_ERRORS = new AtomicLong();
+    static final AtomicLong UNEXPECTED_ERRORS = new AtomicLong();
+    static final AtomicLong LOADS = new AtomicLong();
+    static final AtomicLong DISCONTINUITIES = new AtomicLong();
+    static final AtomicLong NOTIFICATIONS_POSTED = new AtomicLong();
+    static final AtomicLong NOTIFICATIONS_SUPPRESSED = new AtomicLong();
+
+    private static final LatencyHistogram[] HISTOGRAMS = {TIME_TO_FIRST_AUDIO_MS, REBUFFER_MS,
+            CLICK_TO_REVEAL_MS, QUESTION_TRANSITION_MS, BUFFER_PEAK_KB, NATIVE_HEAP_KB};
+
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor();
+    private static volatile String sPlaybackProfile = "none";
+    private static volatile MediaCache sMediaCache;
+
+
+    private QuizMetrics() {
+    }
+
+    /**
+     * Counts a playback error by its type. Source errors are failures to load or extract the
+     * sample, renderer errors are decoder failures.
+     * @param error The error reported by the player.
+     */
+    static void recordPlayerError(ExoPlaybackException error) {
+        switch (error.type) {
+            case ExoPlaybackException.TYPE_SOURCE:
+                SOURCE_ERRORS.incrementAndGet();
+                break;
+            case ExoPlaybackException.TYPE_RENDERER:
+                RENDERER_ERRORS.incrementAndGet();
+                break;
+            default:
+                UNEXPECTED_ERRORS.incrementAndGet();
+                break;
+        }
+    }
+
+    /**
+     * Sets the name of the {@link PlaybackProfile} in use, so snapshots can be told apart.
+     * @param name The profile name.
+     */
+    static void setPlaybackProfile(String name) {
+        sPlaybackProfile = name;
+    }
+
+    /**
+     * Registers the media cache whose hit, miss and eviction counters go into snapshots.
+     * @param mediaCache The process-wide media cache.
+     */
+    static void setMediaCache(MediaCache mediaCache) {
+        sMediaCache = mediaCache;
+    }
+
+    /**
+     * Builds a text snapshot of every metric, one per line.
+     * @return The snapshot.
+     */
+    static String snapshot() {
+        StringBuilder out = new StringBuilder();
+        out.append("playback_profile ").append(sPlaybackProfile).append('\n');
+        appendCounter(out, "rebuffers", REBUFFERS);
+        appendCounter(out, "source_errors", SOURCE_ERRORS);
+        appendCounter(out, "renderer_errors", RENDERER_ERRORS);
+        appendCounter(out, "unexpected_errors", UNEXPECTED_ERRORS);
+        appendCounter(out, "loads", LOADS);
+        appendCounter(out, "discontinuities", DISCONTINUITIES);
+        appendCounter(out, "notifications_posted", NOTIFICATIONS_POSTED);
+        appendCounter(out, "notifications_suppressed", NOTIFICATIONS_SUPPRESSED);
+        MediaCache mediaCache = sMediaCache;
+        if (mediaCache != null) {
+            appendCounter(out, "media_cache_hits", mediaCache.getHits());
+            appendCounter(out, "media_cache_misses", mediaCache.getMisses());
+            appendCounter(out, "media_cache_evictions", mediaCache.getEvictions());
+            appendCounter(out, "media_cache_bytes_from_cache", mediaCache.getBytesFromCache());
+            appendCounter(out, "media_cache_bytes_from_upstream",
+                    mediaCache.getBytesFromUpstream());
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            out.append(String.format(Locale.US,
+                    "%s count=%d mean=%d p50=%d p90=%d p99=%d max=%d%n",
+                    histogram.getName(), histogram.getCount(), histogram.getMean(),
+                    histogram.getPercentile(50), histogram.getPercentile(90),
+                    histogram.getPercentile(99), histogram.getMax()));
+        }
+        return out.toString();
+    }
+
+    private static void appendCounter(StringBuilder out, String name, AtomicLong counter) {
+        appendCounter(out, name, counter.get());
+    }
+
+    private static void appendCounter(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a snapshot to the metrics file in the background, replacing the previous one.
+     * @param context The application context.
+     */
+    static void export(Context context) {
+        final File file = new File(context.getFilesDir(), FILE_NAME);
+        final String snapshot = snapshot();
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                AtomicFile atomicFile = new AtomicFile(file);
+                FileOutputStream out = null;
+                try {
+                    out = atomicFile.startWrite();
+                    out.write(snapshot.getBytes("UTF-8"));
+                    atomicFile.finishWrite(out);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not export metrics", e);
+                    if (out != null) {
+                        atomicFile.failWrite(out);
+                    }
+                }
+            }
+        });
+    }
+}
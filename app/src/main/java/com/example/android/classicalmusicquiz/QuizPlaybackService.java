@@ -0,0 +1,284 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaBrowserServiceCompat;
+import android.support.v4.media.session.MediaButtonReceiver;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the players, the media session and the media notification. The service is started for
+ * the length of a game and bound by the quiz screen, which only tells it what to play, so
+ * playback carries on through configuration changes without the player being rebuilt or the
+ * clip buffered again. Media buttons reach the session through MediaButtonReceiver.
+ *
+ * <p>The quiz binds with {@link #ACTION_BIND_LOCAL} to get the service itself; any other bind
+ * is a media browser connection. The browse tree is empty, only this app may connect.
+ */
+public class QuizPlaybackService extends MediaBrowserServiceCompat
+        implements ExoPlayer.EventListener {
+
+    static final String ACTION_BIND_LOCAL =
+            "com.example.android.classicalmusicquiz.action.BIND_LOCAL";
+
+    private static final String TAG = QuizPlaybackService.class.getSimpleName();
+    private static final String ROOT_ID = "root";
+
+    private final IBinder mBinder = new LocalBinder();
+    private LookAheadPlayer mPlayers;
+    private MediaSessionCompat mMediaSession;
+    private PlaybackStateCompat.Builder mStateBuilder;
+    private MediaNotifier mNotifier;
+    private ExoPlayer.EventListener mClientListener;
+    private boolean mStopped;
+
+
+    /**
+     * Gives the quiz screen direct access to the service, which runs in the same process.
+     */
+    class LocalBinder extends Binder {
+        QuizPlaybackService getService() {
+            return QuizPlaybackService.this;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        initializeMediaSession();
+
+        // The same pair of players, with their renderers and decoders, plays every question.
+        PlaybackProfile profile = PlaybackProfile.forDevice(this);
+        QuizMetrics.setPlaybackProfile(profile.name);
+        mPlayers = new LookAheadPlayer(this, profile, this);
+        mPlayers.setRandomExcerpts(BuildConfig.RANDOM_EXCERPTS);
+        mNotifier = new MediaNotifier(this, mMediaSession.getSessionToken());
+    }
+
+    /**
+     * Initializes the Media Session to be enabled with media buttons, transport controls, callbacks
+     * and media controller.
+     */
+    private void initializeMediaSession() {
+
+        // Create a MediaSessionCompat.
+        mMediaSession = new MediaSessionCompat(this, TAG);
+
+        // Enable callbacks from MediaButtons and TransportControls.
+        mMediaSession.setFlags(
+                MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
+                        MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
+
+        // Do not let MediaButtons restart the player when the app is not visible.
+        mMediaSession.setMediaButtonReceiver(null);
+
+        // Set an initial PlaybackState with ACTION_PLAY, so media buttons can start the player.
+        mStateBuilder = new PlaybackStateCompat.Builder()
+                .setActions(
+                        PlaybackStateCompat.ACTION_PLAY |
+                                PlaybackStateCompat.ACTION_PAUSE |
+                                PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
+                                PlaybackStateCompat.ACTION_PLAY_PAUSE);
+
+        mMediaSession.setPlaybackState(mStateBuilder.build());
+
+        // MySessionCallback has methods that handle callbacks from a media controller.
+        mMediaSession.setCallback(new MySessionCallback());
+
+        mMediaSession.setActive(true);
+        setSessionToken(mMediaSession.getSessionToken());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        MediaButtonReceiver.handleIntent(mMediaSession, intent);
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        if (ACTION_BIND_LOCAL.equals(intent.getAction())) {
+            return mBinder;
+        }
+        return super.onBind(intent);
+    }
+
+    @Nullable
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid,
+                                 @Nullable Bundle rootHints) {
+        return getPackageName().equals(clientPackageName) ? new BrowserRoot(ROOT_ID, null) : null;
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId,
+                               @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+        result.sendResult(new ArrayList<MediaBrowserCompat.MediaItem>());
+    }
+
+    /**
+     * Sets the listener for the events of the player that is playing.
+     * @param listener The listener, or null to remove it.
+     */
+    void setListener(ExoPlayer.EventListener listener) {
+        mClientListener = listener;
+    }
+
+    /**
+     * Plays a sample, unless it is already the one playing.
+     * @param sample The sample to play.
+     * @return The player now playing.
+     */
+    SimpleExoPlayer play(Sample sample) {
+        if (sample.getSampleID() == mPlayers.getActiveSampleID()
+                && mPlayers.getPlayer().getPlaybackState() != ExoPlayer.STATE_IDLE) {
+            return mPlayers.getPlayer();
+        }
+        mStopped = false;
+        return mPlayers.play(sample);
+    }
+
+    /**
+     * Starts buffering the answer of the next question.
+     * @param sample The sample to buffer.
+     */
+    void preload(Sample sample) {
+        mPlayers.preload(sample);
+    }
+
+    /**
+     * Stops playback and the service once the game is over. The player reports IDLE after this
+     * returns, so the notification is no longer updated once stopped.
+     */
+    void stop() {
+        mStopped = true;
+        mPlayers.getPlayer().stop();
+        mNotifier.cancel();
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mNotifier.cancel();
+        mPlayers.release();
+        mMediaSession.setActive(false);
+        mMediaSession.release();
+    }
+
+
+    // ExoPlayer Event Listeners
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, Object manifest) {
+        if (mClientListener != null) {
+            mClientListener.onTimelineChanged(timeline, manifest);
+        }
+    }
+
+    @Override
+    public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+        if (mClientListener != null) {
+            mClientListener.onTracksChanged(trackGroups, trackSelections);
+        }
+    }
+
+    @Override
+    public void onLoadingChanged(boolean isLoading) {
+        if (mClientListener != null) {
+            mClientListener.onLoadingChanged(isLoading);
+        }
+    }
+
+    /**
+     * Method that is called when the ExoPlayer state changes. Used to update the MediaSession
+     * PlayBackState to keep in sync, and post the media notification.
+     * @param playWhenReady true if ExoPlayer is playing, false if it's paused.
+     * @param playbackState int describing the state of ExoPlayer. Can be STATE_READY, STATE_IDLE,
+     *                      STATE_BUFFERING, or STATE_ENDED.
+     */
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if((playbackState == ExoPlayer.STATE_READY) && playWhenReady){
+            mStateBuilder.setState(PlaybackStateCompat.STATE_PLAYING,
+                    mPlayers.getPlayer().getCurrentPosition(), 1f);
+        } else if((playbackState == ExoPlayer.STATE_READY)){
+            mStateBuilder.setState(PlaybackStateCompat.STATE_PAUSED,
+                    mPlayers.getPlayer().getCurrentPosition(), 1f);
+        }
+        PlaybackStateCompat state = mStateBuilder.build();
+        mMediaSession.setPlaybackState(state);
+        if (!mStopped) {
+            mNotifier.update(state);
+        }
+        if (mClientListener != null) {
+            mClientListener.onPlayerStateChanged(playWhenReady, playbackState);
+        }
+    }
+
+    @Override
+    public void onPlayerError(ExoPlaybackException error) {
+        if (mClientListener != null) {
+            mClientListener.onPlayerError(error);
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity() {
+        if (mClientListener != null) {
+            mClientListener.onPositionDiscontinuity();
+        }
+    }
+
+    /**
+     * Media Session Callbacks, where all external clients control the player.
+     */
+    private class MySessionCallback extends MediaSessionCompat.Callback {
+        @Override
+        public void onPlay() {
+            mPlayers.getPlayer().setPlayWhenReady(true);
+        }
+
+        @Override
+        public void onPause() {
+            mPlayers.getPlayer().setPlayWhenReady(false);
+        }
+
+        @Override
+        public void onSkipToPrevious() {
+            mPlayers.getPlayer().seekTo(0);
+        }
+    }
+}
@@ -16,19 +16,7 @@ package com.example.android.classicalmusicquiz;
 * limitations under the License.
 */
 
-import android.content.Context;
-import android.content.res.AssetManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.net.Uri;
 import android.util.JsonReader;
-import android.widget.Toast;
-
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DataSourceInputStream;
-import com.google.android.exoplayer2.upstream.DataSpec;
-import com.google.android.exoplayer2.upstream.DefaultDataSource;
-import com.google.android.exoplayer2.util.Util;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,8 +24,8 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 
 /**
- * Java Object representing a single sample. Also includes utility methods for obtaining samples
- * from assets.
+ * Java Object representing a single sample. Also includes the parser for JSON catalogs, which
+ * only depends on JsonReader so that it can be benchmarked off-device.
  */
 class Sample {
 
@@ -46,9 +34,13 @@ class Sample {
     private String mTitle;
     private String mUri;
     private String mAlbumArtID;
+    private int mExcerptStartMs = -1;
+    private int mExcerptDurationMs = -1;
+    private int mDurationMs = -1;
+    private String mSeekIndex;
 
 
-    private Sample(int sampleID, String composer, String title, String uri, String albumArtID) {
+    Sample(int sampleID, String composer, String title, String uri, String albumArtID) {
         mSampleID = sampleID;
         mComposer = composer;
         mTitle = title;
@@ -57,63 +49,25 @@ class Sample {
     }
 
     /**
-     * Gets portrait of the composer for a sample by the sample ID.
-     * @param context The application context.
-     * @param sampleID The sample ID.
-     * @return The portrait Bitmap.
-     */
-    static Bitmap getComposerArtBySampleID(Context context, int sampleID){
-        Sample sample = Sample.getSampleByID(context, sampleID);
-        int albumArtID = context.getResources().getIdentifier(
-                sample != null ? sample.getAlbumArtID() : null, "drawable",
-                context.getPackageName());
-        return BitmapFactory.decodeResource(context.getResources(), albumArtID);
-    }
-
-    /**
-     * Gets a single sample by its ID.
-     * @param context The application context.
-     * @param sampleID The sample ID.
-     * @return The sample object.
-     */
-    static Sample getSampleByID(Context context, int sampleID) {
-        JsonReader reader;
-        try {
-            reader = readJSONFile(context);
-            reader.beginArray();
-            while (reader.hasNext()) {
-                Sample currentSample = readEntry(reader);
-                if (currentSample.getSampleID() == sampleID) {
-                    reader.close();
-                    return currentSample;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    /**
-     * Gets and ArrayList of the IDs for all of the Samples from the JSON file.
-     * @param context The application context.
-     * @return The ArrayList of all sample IDs.
+     * Parses every sample in a JSON catalog. This reads the whole file, so callers should go
+     * through {@link SampleCatalog} which only does it once.
+     * @param inputStream The JSON catalog. It is closed once read.
+     * @return The ArrayList of all samples, in file order.
      */
-    static ArrayList<Integer> getAllSampleIDs(Context context){
+    static ArrayList<Sample> readAllSamples(InputStream inputStream) {
         JsonReader reader;
-        ArrayList<Integer> sampleIDs = new ArrayList<>();
+        ArrayList<Sample> samples = new ArrayList<>();
         try {
-            reader = readJSONFile(context);
+            reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
             reader.beginArray();
             while (reader.hasNext()) {
-                sampleIDs.add(readEntry(reader).getSampleID());
+                samples.add(readEntry(reader));
             }
             reader.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return sampleIDs;
+        return samples;
     }
 
     /**
@@ -121,12 +75,16 @@ class Sample {
      * @param reader The JSON reader object pointing a single sample JSON object.
      * @return The Sample the JsonReader is pointing to.
      */
-    private static Sample readEntry(JsonReader reader) {
+    static Sample readEntry(JsonReader reader) {
         Integer id = -1;
         String composer = null;
         String title = null;
         String uri = null;
         String albumArtID = null;
+        int excerptStartMs = -1;
+        int excerptDurationMs = -1;
+        int durationMs = -1;
+        String seekIndex = null;
 
         try {
             reader.beginObject();
@@ -148,6 +106,18 @@ class Sample {
                     case "albumArtID":
                         albumArtID = reader.nextString();
                         break;
+                    case "excerptStartMs":
+                        excerptStartMs = reader.nextInt();
+                        break;
+                    case "excerptDurationMs":
+                        excerptDurationMs = reader.nextInt();
+                        break;
+                    case "durationMs":
+                        durationMs = reader.nextInt();
+                        break;
+                    case "seekIndex":
+                        seekIndex = reader.nextString();
+                        break;
                     default:
                         break;
                 }
@@ -157,43 +127,10 @@ class Sample {
             e.printStackTrace();
         }
 
-        return new Sample(id, composer, title, uri, albumArtID);
-    }
-
-    /**
-     * Method for creating a JsonReader object that points to the JSON array of samples.
-     * @param context The application context.
-     * @return The JsonReader object pointing to the JSON array of samples.
-     * @throws IOException Exception thrown if the sample file can't be found.
-     */
-    private static JsonReader readJSONFile(Context context) throws IOException {
-        AssetManager assetManager = context.getAssets();
-        String uri = null;
-
-        try {
-            for (String asset : assetManager.list("")) {
-                if (asset.endsWith(".exolist.json")) {
-                    uri = "asset:///" + asset;
-                }
-            }
-        } catch (IOException e) {
-            Toast.makeText(context, R.string.sample_list_load_error, Toast.LENGTH_LONG)
-                    .show();
-        }
-
-        String userAgent = Util.getUserAgent(context, "ClassicalMusicQuiz");
-        DataSource dataSource = new DefaultDataSource(context, null, userAgent, false);
-        DataSpec dataSpec = new DataSpec(Uri.parse(uri));
-        InputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
-
-        JsonReader reader = null;
-        try {
-            reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
-        } finally {
-            Util.closeQuietly(dataSource);
-        }
-
-        return reader;
+        Sample sample = new Sample(id, composer, title, uri, albumArtID);
+        sample.setExcerpt(excerptStartMs, excerptDurationMs, durationMs);
+        sample.setSeekIndex(seekIndex);
+        return sample;
     }
 
     // Getters and Setters
@@ -237,4 +174,36 @@ class Sample {
     void setAlbumArtID(String albumArtID) {
         mAlbumArtID = albumArtID;
     }
+
+    /**
+     * Sets the part of the sample that the quiz plays. Pass -1 for values that are unknown.
+     * @param excerptStartMs Where the excerpt starts.
+     * @param excerptDurationMs How long the excerpt is, or -1 to play to the end.
+     * @param durationMs The duration of the whole sample, used to pick random excerpts.
+     */
+    void setExcerpt(int excerptStartMs, int excerptDurationMs, int durationMs) {
+        mExcerptStartMs = excerptStartMs;
+        mExcerptDurationMs = excerptDurationMs;
+        mDurationMs = durationMs;
+    }
+
+    int getExcerptStartMs() {
+        return mExcerptStartMs;
+    }
+
+    int getExcerptDurationMs() {
+        return mExcerptDurationMs;
+    }
+
+    int getDurationMs() {
+        return mDurationMs;
+    }
+
+    String getSeekIndex() {
+        return mSeekIndex;
+    }
+
+    void setSeekIndex(String seekIndex) {
+        mSeekIndex = seekIndex;
+    }
 }
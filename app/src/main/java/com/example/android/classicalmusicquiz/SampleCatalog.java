@@ -0,0 +1,271 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide catalog of samples. The sample list is opened once, on first use, into a
+ * {@link SampleIndex} which then serves every lookup from memory. The catalogs to load come from
+ * the {@link AssetManifest}, or from the active {@link ContentPack}. {@link #invalidate()} is
+ * called when a new pack is installed, so that the catalog is read again the next time it's
+ * needed.
+ */
+class SampleCatalog {
+
+    private static SampleCatalog sInstance;
+
+    private final SampleIndex mIndex;
+
+
+    private SampleCatalog(SampleIndex index) {
+        mIndex = index;
+    }
+
+    /**
+     * Gets the catalog, loading it if this is the first use since launch or invalidation.
+     * @param context The application context.
+     * @return The loaded catalog.
+     */
+    static synchronized SampleCatalog getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SampleCatalog(new SampleIndex(
+                    openSource(context.getApplicationContext())));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets the number of distinct samples without loading the catalog if it can be avoided. With
+     * a single binary catalog only its header is read; otherwise the catalog is loaded.
+     * @param context The application context.
+     * @return The number of samples in the catalog.
+     */
+    static int peekSize(Context context) {
+        synchronized (SampleCatalog.class) {
+            if (sInstance != null) {
+                return sInstance.size();
+            }
+        }
+        ContentPack pack = ContentPack.acquire(context);
+        try {
+            if (pack != null) {
+                List<ContentPack.Entry> catalogs = pack.getCatalogs();
+                if (catalogs.size() == 1) {
+                    return BinaryCatalog.readHeader(pack.map(catalogs.get(0))).uniqueCount;
+                }
+            } else {
+                List<String> catalogs = AssetManifest.getInstance(context).getCatalogs();
+                if (catalogs.size() == 1) {
+                    return BinaryCatalog.readHeader(context.getAssets(),
+                            catalogs.get(0) + BinaryCatalog.SUFFIX).uniqueCount;
+                }
+            }
+        } catch (IOException e) {
+            // No binary catalog, count the samples the slow way.
+        } finally {
+            if (pack != null) {
+                pack.release();
+            }
+        }
+        return getInstance(context).size();
+    }
+
+    /**
+     * Opens every catalog listed in the asset manifest, lowest priority first, so that higher
+     * priority catalogs override samples with the same ID. Each catalog is read from its binary
+     * form if the build produced one, otherwise its JSON file is parsed. If a
+     * {@link ContentPack} is active its catalogs are used instead of the assets.
+     * @param context The application context.
+     * @return The source to index.
+     */
+    private static CatalogSource openSource(Context context) {
+        ContentPack pack = ContentPack.acquire(context);
+        if (pack != null) {
+            try {
+                // The catalogs are mapped, so they stay readable once the pack is closed.
+                return openPackSource(pack);
+            } finally {
+                pack.release();
+            }
+        }
+        List<String> catalogs = AssetManifest.getInstance(context).getCatalogs();
+        CatalogSource[] sources = new CatalogSource[catalogs.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = openCatalog(context, catalogs.get(i));
+        }
+        return sources.length == 1 ? sources[0] : new MergedSource(sources);
+    }
+
+    private static CatalogSource openPackSource(ContentPack pack) {
+        List<ContentPack.Entry> catalogs = pack.getCatalogs();
+        CatalogSource[] sources = new CatalogSource[catalogs.size()];
+        for (int i = 0; i < sources.length; i++) {
+            try {
+                sources[i] = BinaryCatalog.open(pack.map(catalogs.get(i)));
+            } catch (IOException e) {
+                e.printStackTrace();
+                sources[i] = new ListSource(new ArrayList<Sample>());
+            }
+        }
+        return sources.length == 1 ? sources[0] : new MergedSource(sources);
+    }
+
+    private static CatalogSource openCatalog(Context context, String name) {
+        try {
+            return BinaryCatalog.open(context.getAssets(), name + BinaryCatalog.SUFFIX);
+        } catch (IOException e) {
+            // No binary catalog for this one, parse the JSON instead.
+        }
+        try {
+            return new ListSource(Sample.readAllSamples(MappedAssets.open(context.getAssets(),
+                    name + AssetManifest.JSON_SUFFIX)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ListSource(new ArrayList<Sample>());
+        }
+    }
+
+    /**
+     * Drops the loaded catalog so that the next call to {@link #getInstance(Context)} reads it
+     * again.
+     */
+    static synchronized void invalidate() {
+        sInstance = null;
+    }
+
+    /**
+     * Gets a single sample by its ID.
+     * @param sampleID The sample ID.
+     * @return The sample object, or null if there is no sample with that ID.
+     */
+    Sample getSample(int sampleID) {
+        return mIndex.getSampleByID(sampleID);
+    }
+
+    /**
+     * Gets several samples by their IDs in one pass.
+     * @param sampleIDs The sample IDs.
+     * @param count The number of IDs to look up, from the start of sampleIDs.
+     * @param out Receives the sample of each ID at the same index, or null if there is no sample
+     *            with that ID.
+     */
+    void getSamplesByIDs(int[] sampleIDs, int count, Sample[] out) {
+        mIndex.getSamplesByIDs(sampleIDs, count, out);
+    }
+
+    /**
+     * Gets the position of a sample in the catalog.
+     * @param sampleID The sample ID.
+     * @return The position of the sample, or -1 if there is no sample with that ID.
+     */
+    int indexOf(int sampleID) {
+        return mIndex.indexOf(sampleID);
+    }
+
+    /**
+     * @param position The position of the sample in the catalog.
+     * @return The ID of the sample at that position.
+     */
+    int getSampleID(int position) {
+        return mIndex.getSampleID(position);
+    }
+
+    /**
+     * @return The number of samples in the catalog.
+     */
+    int size() {
+        return mIndex.size();
+    }
+
+    /**
+     * CatalogSource over samples that have already been parsed.
+     */
+    private static class ListSource implements CatalogSource {
+
+        private final ArrayList<Sample> mSamples;
+
+        ListSource(ArrayList<Sample> samples) {
+            mSamples = samples;
+        }
+
+        @Override
+        public int size() {
+            return mSamples.size();
+        }
+
+        @Override
+        public int getSampleID(int position) {
+            return mSamples.get(position).getSampleID();
+        }
+
+        @Override
+        public Sample readSample(int position) {
+            return mSamples.get(position);
+        }
+    }
+
+    /**
+     * CatalogSource that concatenates several catalogs.
+     */
+    private static class MergedSource implements CatalogSource {
+
+        private final CatalogSource[] mSources;
+        private final int[] mStarts;
+        private final int mSize;
+
+        MergedSource(CatalogSource[] sources) {
+            mSources = sources;
+            mStarts = new int[sources.length];
+            int size = 0;
+            for (int i = 0; i < sources.length; i++) {
+                mStarts[i] = size;
+                size += sources[i].size();
+            }
+            mSize = size;
+        }
+
+        private int sourceOf(int position) {
+            int i = mSources.length - 1;
+            while (mStarts[i] > position) {
+                i--;
+            }
+            return i;
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public int getSampleID(int position) {
+            int i = sourceOf(position);
+            return mSources[i].getSampleID(position - mStarts[i]);
+        }
+
+        @Override
+        public Sample readSample(int position) {
+            int i = sourceOf(position);
+            return mSources[i].readSample(position - mStarts[i]);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Arrays;
+
+/**
+ * Immutable index from sample ID to Sample. Catalogs that number their samples compactly (the
+ * usual case) are resolved with a single array read, sparse or negative IDs fall back to a binary
+ * search over the sorted IDs. If an ID appears more than once, the last entry wins but keeps the
+ * position of the first one. Samples are read from the {@link CatalogSource} the first time they
+ * are asked for.
+ */
+class SampleIndex {
+
+    // Use a dense ID table as long as it wastes less than this many slots per sample.
+    private static final int MAX_DENSE_SLOTS_PER_SAMPLE = 4;
+
+    private final CatalogSource mSource;
+    private final Sample[] mSamples;
+    private final int[] mSampleIDs;
+    private final int[] mSourcePositions;
+    private final int[] mSortedIDs;
+    private final int[] mSortedPositions;
+    private final int[] mPositionsByID;
+
+
+    SampleIndex(CatalogSource source) {
+        mSource = source;
+        int count = source.size();
+
+        // Sort (ID, position) pairs so that duplicate IDs end up next to each other.
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) source.getSampleID(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] ids = new int[count];
+        int[] firstPositions = new int[count];
+        int[] lastPositions = new int[count];
+        int unique = 0;
+        for (int i = 0; i < count; ) {
+            int id = (int) (keys[i] >> 32);
+            int j = i;
+            while (j + 1 < count && (int) (keys[j + 1] >> 32) == id) {
+                j++;
+            }
+            ids[unique] = id;
+            firstPositions[unique] = (int) keys[i];
+            lastPositions[unique] = (int) keys[j];
+            unique++;
+            i = j + 1;
+        }
+
+        // Order the unique IDs by where they first appeared in the catalog.
+        long[] order = new long[unique];
+        for (int k = 0; k < unique; k++) {
+            order[k] = ((long) firstPositions[k] << 32) | k;
+        }
+        Arrays.sort(order);
+
+        mSamples = new Sample[unique];
+        mSampleIDs = new int[unique];
+        mSourcePositions = new int[unique];
+        mSortedIDs = Arrays.copyOf(ids, unique);
+        mSortedPositions = new int[unique];
+        for (int position = 0; position < unique; position++) {
+            int k = (int) order[position];
+            mSourcePositions[position] = lastPositions[k];
+            mSampleIDs[position] = ids[k];
+            mSortedPositions[k] = position;
+        }
+
+        mPositionsByID = buildDenseTable(mSortedIDs, mSortedPositions);
+    }
+
+    /**
+     * Builds an ID to position table if the IDs are compact enough for it.
+     * @param sortedIDs The sorted, unique sample IDs.
+     * @param sortedPositions The positions matching sortedIDs.
+     * @return The table, with -1 for unused IDs, or null if the IDs are too sparse.
+     */
+    private static int[] buildDenseTable(int[] sortedIDs, int[] sortedPositions) {
+        int count = sortedIDs.length;
+        if (count == 0 || sortedIDs[0] < 0) {
+            return null;
+        }
+        long slots = (long) sortedIDs[count - 1] + 1;
+        if (slots > (long) count * MAX_DENSE_SLOTS_PER_SAMPLE) {
+            return null;
+        }
+        int[] table = new int[(int) slots];
+        Arrays.fill(table, -1);
+        for (int k = 0; k < count; k++) {
+            table[sortedIDs[k]] = sortedPositions[k];
+        }
+        return table;
+    }
+
+    /**
+     * Gets the position of a sample in the catalog.
+     * @param sampleID The sample ID.
+     * @return The position of the sample, or -1 if there is no sample with that ID.
+     */
+    int indexOf(int sampleID) {
+        if (mPositionsByID != null) {
+            return sampleID >= 0 && sampleID < mPositionsByID.length
+                    ? mPositionsByID[sampleID] : -1;
+        }
+        int k = Arrays.binarySearch(mSortedIDs, sampleID);
+        return k >= 0 ? mSortedPositions[k] : -1;
+    }
+
+    /**
+     * Gets a single sample by its ID.
+     * @param sampleID The sample ID.
+     * @return The sample object, or null if there is no sample with that ID.
+     */
+    Sample getSampleByID(int sampleID) {
+        int position = indexOf(sampleID);
+        return position >= 0 ? getSample(position) : null;
+    }
+
+    /**
+     * Gets several samples by their IDs with a single index probe each, taking the lock once.
+     * @param sampleIDs The sample IDs.
+     * @param count The number of IDs to look up, from the start of sampleIDs.
+     * @param out Receives the sample of each ID at the same index, or null if there is no sample
+     *            with that ID.
+     */
+    synchronized void getSamplesByIDs(int[] sampleIDs, int count, Sample[] out) {
+        for (int i = 0; i < count; i++) {
+            int position = indexOf(sampleIDs[i]);
+            out[i] = position >= 0 ? getSample(position) : null;
+        }
+    }
+
+    int size() {
+        return mSamples.length;
+    }
+
+    synchronized Sample getSample(int position) {
+        Sample sample = mSamples[position];
+        if (sample == null) {
+            sample = mSource.readSample(mSourcePositions[position]);
+            mSamples[position] = sample;
+        }
+        return sample;
+    }
+
+    int getSampleID(int position) {
+        return mSampleIDs[position];
+    }
+}
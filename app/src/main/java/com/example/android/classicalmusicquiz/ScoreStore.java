@@ -0,0 +1,258 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Scores and answer statistics. The in-memory values are authoritative: reads and updates never
+ * touch the disk, and {@link #flush()} writes them out in the background, coalescing whatever
+ * changed since the last flush into a single write. The file is replaced through an
+ * {@link AtomicFile}, so a crash mid-write leaves the previous version to recover from.
+ */
+class ScoreStore {
+
+    private static final String TAG = ScoreStore.class.getSimpleName();
+    private static final String FILE_NAME = "scores.bin";
+    private static final int MAGIC = 0x434D5353;
+    private static final int VERSION = 1;
+
+    // Keys of the SharedPreferences the scores were kept in before, to migrate from.
+    private static final String CURRENT_SCORE_KEY = "current_score";
+    private static final String HIGH_SCORE_KEY = "high_score";
+
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor();
+    private static ScoreStore sInstance;
+
+    private final AtomicFile mFile;
+    private int mHighScore;
+    private int mCurrentScore;
+    private int mAnswered;
+    private int mCorrect;
+    private long mTotalLatencyMs;
+    private long mFastestCorrectMs = -1;
+    private boolean mDirty;
+    private byte[] mPendingWrite;
+
+
+    private ScoreStore(File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * Gets the process-wide store, reading it from disk on first use.
+     * @param context The application context.
+     * @return The store.
+     */
+    static synchronized ScoreStore getInstance(Context context) {
+        if (sInstance == null) {
+            context = context.getApplicationContext();
+            sInstance = new ScoreStore(new File(context.getFilesDir(), FILE_NAME));
+            if (!sInstance.read()) {
+                sInstance.migrate(context);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Loads the saved values.
+     * @return false if there was nothing to load.
+     */
+    private boolean read() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(mFile.openRead());
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(TAG, "Ignoring score file with an unknown format");
+                return false;
+            }
+            mHighScore = in.readInt();
+            mCurrentScore = in.readInt();
+            mAnswered = in.readInt();
+            mCorrect = in.readInt();
+            mTotalLatencyMs = in.readLong();
+            mFastestCorrectMs = in.readLong();
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read scores", e);
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing was written, there is nothing to lose.
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes over the scores saved in SharedPreferences by earlier versions of the app.
+     * @param context The application context.
+     */
+    private void migrate(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(
+                context.getString(R.string.preference_file_key), Context.MODE_PRIVATE);
+        if (preferences.contains(HIGH_SCORE_KEY)) {
+            mHighScore = preferences.getInt(HIGH_SCORE_KEY, 0);
+            mCurrentScore = preferences.getInt(CURRENT_SCORE_KEY, 0);
+            mDirty = true;
+            flush();
+        }
+    }
+
+    synchronized int getHighScore() {
+        return mHighScore;
+    }
+
+    synchronized int getCurrentScore() {
+        return mCurrentScore;
+    }
+
+    /**
+     * Sets the current score, raising the high score if it is beaten.
+     * @param currentScore The user's current score.
+     */
+    synchronized void setCurrentScore(int currentScore) {
+        mCurrentScore = currentScore;
+        if (currentScore > mHighScore) {
+            mHighScore = currentScore;
+        }
+        mDirty = true;
+    }
+
+    synchronized void setHighScore(int highScore) {
+        mHighScore = highScore;
+        mDirty = true;
+    }
+
+    /**
+     * Records one answered question.
+     * @param correct true if the user picked the right answer.
+     * @param latencyMs The time from the clip starting to the user answering.
+     */
+    synchronized void recordAnswer(boolean correct, long latencyMs) {
+        mAnswered++;
+        mTotalLatencyMs += latencyMs;
+        if (correct) {
+            mCorrect++;
+            if (mFastestCorrectMs < 0 || latencyMs < mFastestCorrectMs) {
+                mFastestCorrectMs = latencyMs;
+            }
+        }
+        mDirty = true;
+    }
+
+    synchronized int getAnsweredCount() {
+        return mAnswered;
+    }
+
+    synchronized int getCorrectCount() {
+        return mCorrect;
+    }
+
+    /**
+     * @return The average time to answer in milliseconds, or -1 if nothing was answered.
+     */
+    synchronized long getAverageLatencyMs() {
+        return mAnswered > 0 ? mTotalLatencyMs / mAnswered : -1;
+    }
+
+    /**
+     * @return The fastest correct answer in milliseconds, or -1 if none was correct.
+     */
+    synchronized long getFastestCorrectMs() {
+        return mFastestCorrectMs;
+    }
+
+    /**
+     * Writes the current values in the background if anything changed since the last flush.
+     * A flush that finds a write still pending replaces what that write will save.
+     */
+    synchronized void flush() {
+        if (!mDirty) {
+            return;
+        }
+        mDirty = false;
+        boolean scheduled = mPendingWrite != null;
+        mPendingWrite = serialize();
+        if (!scheduled) {
+            sWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(takePendingWrite());
+                }
+            });
+        }
+    }
+
+    private synchronized byte[] takePendingWrite() {
+        byte[] data = mPendingWrite;
+        mPendingWrite = null;
+        return data;
+    }
+
+    private byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mHighScore);
+            out.writeInt(mCurrentScore);
+            out.writeInt(mAnswered);
+            out.writeInt(mCorrect);
+            out.writeLong(mTotalLatencyMs);
+            out.writeLong(mFastestCorrectMs);
+        } catch (IOException e) {
+            // Writing to memory can't fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void write(byte[] data) {
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            out.write(data);
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save scores", e);
+            if (out != null) {
+                mFile.failWrite(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import com.google.android.exoplayer2.extractor.SeekMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * SeekMap backed by the seek index sidecar the build writes next to each MP3 (see
+ * SeekIndexWriter in buildSrc). It holds the byte offset of the frame playing at every multiple
+ * of a fixed interval, so seeking to any time is a single array read instead of a bitrate
+ * estimate or a scan.
+ */
+class SeekIndex implements SeekMap {
+
+    private static final int MAGIC = 0x434D5153;
+    private static final int VERSION = 1;
+
+    private final int mIntervalMs;
+    private final long mDurationUs;
+    private final int[] mOffsets;
+
+
+    private SeekIndex(int intervalMs, long durationUs, int[] offsets) {
+        mIntervalMs = intervalMs;
+        mDurationUs = durationUs;
+        mOffsets = offsets;
+    }
+
+    /**
+     * Reads a seek index.
+     * @param inputStream The sidecar contents. The stream is closed.
+     * @return The seek index.
+     * @throws IOException If reading fails or the data isn't a seek index.
+     */
+    static SeekIndex read(InputStream inputStream) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(inputStream));
+        try {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Not a seek index");
+            }
+            int intervalMs = data.readInt();
+            long durationUs = data.readLong();
+            int[] offsets = new int[data.readInt()];
+            if (intervalMs <= 0 || offsets.length == 0) {
+                throw new IOException("Empty seek index");
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = data.readInt();
+            }
+            return new SeekIndex(intervalMs, durationUs, offsets);
+        } finally {
+            data.close();
+        }
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return mDurationUs;
+    }
+
+    @Override
+    public long getPosition(long timeUs) {
+        long entry = timeUs / 1000 / mIntervalMs;
+        return mOffsets[(int) Math.max(0, Math.min(entry, mOffsets.length - 1))];
+    }
+
+    /**
+     * Maps a byte position back to the time of its index entry. Positions returned by
+     * {@link #getPosition(long)} map to the earliest entry at that offset; other positions map to
+     * the last entry before them.
+     * @param position The byte position of a frame.
+     * @return The time of the entry in microseconds.
+     */
+    long getTimeUs(long position) {
+        int low = 0;
+        int high = mOffsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mOffsets[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int entry = low < mOffsets.length && mOffsets[low] == position ? low : low - 1;
+        return Math.max(0, entry) * mIntervalMs * 1000L;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.support.v4.util.LongSparseArray;
+
+import java.util.Random;
+
+/**
+ * Process-wide store of game sessions. Activities keep only the token of their session, so
+ * recreating one passes a single long around instead of the game state.
+ */
+class SessionStore {
+
+    private static final LongSparseArray<GameSession> sSessions = new LongSparseArray<>();
+
+    // Tokens start at a random value so a token saved by a previous process never matches.
+    private static long sNextToken = new Random().nextLong();
+
+
+    private SessionStore() {
+    }
+
+    /**
+     * Adds a session to the store.
+     * @param session The session.
+     * @return The token to look the session up with.
+     */
+    static synchronized long put(GameSession session) {
+        long token = sNextToken++;
+        sSessions.put(token, session);
+        return token;
+    }
+
+    /**
+     * Gets a session from its token.
+     * @param token The token returned by {@link #put(GameSession)}.
+     * @return The session, or null if it was removed or belongs to a previous process.
+     */
+    static synchronized GameSession get(long token) {
+        return sSessions.get(token);
+    }
+
+    /**
+     * Drops a session once its game is over.
+     * @param token The token returned by {@link #put(GameSession)}.
+     */
+    static synchronized void remove(long token) {
+        sSessions.remove(token);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Records how long a cold start takes, from the first activity being created to its first
+ * frame being drawn, and from process start where the platform reports it. Each cold start
+ * appends a tab separated line to a file in the app's files directory:
+ *
+ * <pre>
+ * wall clock time  version code  version name  activity  create to draw ms  process to draw ms
+ * </pre>
+ *
+ * The process column is -1 before Android 7.0. Pull the file with
+ * {@code adb shell run-as com.example.android.classicalmusicquiz cat files/startup_trace.tsv}.
+ */
+class StartupTrace {
+
+    private static final String TAG = StartupTrace.class.getSimpleName();
+    private static final String FILE_NAME = "startup_trace.tsv";
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+
+    private static boolean sStarted;
+
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Waits for the first frame of a cold start, if the activity is the first one created in
+     * this process. Call once the content view is set, since that must happen before the window's
+     * decor view is created.
+     * @param activity The activity being created.
+     * @param createMs The {@link SystemClock#uptimeMillis()} at the start of onCreate.
+     */
+    static void onActivityCreate(Activity activity, final long createMs) {
+        if (sStarted) {
+            return;
+        }
+        sStarted = true;
+        final Context context = activity.getApplicationContext();
+        final String activityName = activity.getClass().getSimpleName();
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        long drawMs = SystemClock.uptimeMillis();
+                        long processStartMs = getProcessStartUptimeMillis();
+                        record(context, activityName, drawMs - createMs,
+                                processStartMs >= 0 ? drawMs - processStartMs : -1);
+                        return true;
+                    }
+                });
+    }
+
+    private static long getProcessStartUptimeMillis() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return getProcessStartUptimeMillisV24();
+        }
+        return -1;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private static long getProcessStartUptimeMillisV24() {
+        return Process.getStartUptimeMillis();
+    }
+
+    /**
+     * Appends a line to the trace file, off the main thread.
+     */
+    private static void record(final Context context, final String activityName,
+                               final long createToDrawMs, final long processToDrawMs) {
+        final String line = System.currentTimeMillis() + "\t" + BuildConfig.VERSION_CODE + "\t"
+                + BuildConfig.VERSION_NAME + "\t" + activityName + "\t" + createToDrawMs + "\t"
+                + processToDrawMs + "\n";
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(context.getFilesDir(), FILE_NAME);
+                // Start over rather than grow without bound.
+                boolean append = file.length() < MAX_FILE_BYTES;
+                Writer writer = null;
+                try {
+                    writer = new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8");
+                    writer.write(line);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not record the startup trace", e);
+                } finally {
+                    if (writer != null) {
+                        try {
+                            writer.close();
+                        } catch (IOException e) {
+                            Log.w(TAG, "Could not record the startup trace", e);
+                        }
+                    }
+                }
+            }
+        }, TAG).start();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test that reads back the content pack the packTestContent task builds from
+ * src/test/pack, which will execute on the development machine (host).
+ */
+public class ContentPackTest {
+
+    private static final File PACK_SOURCES = new File("src/test/pack");
+
+    private ContentPack mPack;
+
+    @Before
+    public void openPack() throws IOException {
+        String packPath = System.getProperty("testContentPack");
+        assertNotNull("Run through Gradle, which builds the test pack", packPath);
+        mPack = ContentPack.open(new File(packPath));
+    }
+
+    @After
+    public void releasePack() {
+        mPack.release();
+    }
+
+    @Test
+    public void catalog_hasPackUris() throws IOException {
+        List<ContentPack.Entry> catalogs = mPack.getCatalogs();
+        assertEquals(1, catalogs.size());
+        assertEquals("test", catalogs.get(0).key);
+
+        BinaryCatalog catalog = BinaryCatalog.open(mPack.map(catalogs.get(0)));
+        assertEquals(1, catalog.size());
+        Sample sample = catalog.readSample(0);
+        assertEquals(7, sample.getSampleID());
+        assertEquals("Test Composer", sample.getComposer());
+        assertEquals("test_portrait", sample.getAlbumArtID());
+        assertEquals("pack:///test_tone.mp3", sample.getUri());
+        assertEquals("pack:///test_tone.mp3.seek", sample.getSeekIndex());
+    }
+
+    @Test
+    public void audio_matchesSource() throws IOException {
+        ContentPack.Entry entry = mPack.getEntry("test_tone.mp3", ContentPack.TYPE_AUDIO);
+        assertNotNull(entry);
+        byte[] expected = readFully(new FileInputStream(new File(PACK_SOURCES,
+                "media/test_tone.mp3")));
+        assertArrayEquals(expected, readFully(mPack.openStream(entry)));
+
+        // Positional reads from the middle of the entry stop at its end.
+        ByteBuffer tail = ByteBuffer.allocate(expected.length);
+        assertEquals(10, mPack.read(entry, expected.length - 10, tail));
+        assertEquals(-1, mPack.read(entry, expected.length, tail));
+    }
+
+    @Test
+    public void seekIndex_isReadable() throws IOException {
+        ContentPack.Entry entry =
+                mPack.getEntry("test_tone.mp3.seek", ContentPack.TYPE_SEEK_INDEX);
+        assertNotNull(entry);
+        SeekIndex seekIndex = SeekIndex.read(mPack.openStream(entry));
+        assertEquals(1000000, seekIndex.getDurationUs());
+        assertEquals(600, seekIndex.getPosition(100000));
+        assertEquals(100000, seekIndex.getTimeUs(600));
+    }
+
+    @Test
+    public void art_isKeyedByDrawableName() throws IOException {
+        assertNull(mPack.getEntry("test_portrait.png", ContentPack.TYPE_ART));
+        ContentPack.Entry entry = mPack.getEntry("test_portrait", ContentPack.TYPE_ART);
+        assertNotNull(entry);
+        byte[] expected = readFully(new FileInputStream(new File(PACK_SOURCES,
+                "drawable/test_portrait.png")));
+        assertArrayEquals(expected, readFully(mPack.openStream(entry)));
+    }
+
+    @Test
+    public void release_closesOnceStreamsAreClosed() throws IOException {
+        ContentPack.Entry entry = mPack.getEntry("test_tone.mp3", ContentPack.TYPE_AUDIO);
+        InputStream in = mPack.openStream(entry);
+        mPack.release();
+        assertTrue(in.read() >= 0);
+        in.close();
+        try {
+            mPack.read(entry, 0, ByteBuffer.allocate(1));
+            fail("The pack should be closed");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
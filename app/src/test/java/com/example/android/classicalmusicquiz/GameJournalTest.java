@@ -0,0 +1,121 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for reading back the game journal, which will execute on the development
+ * machine (host).
+ */
+public class GameJournalTest {
+
+    private static final int MAGIC = 0x434D514A;
+    private static final int VERSION = 1;
+    private static final int QUESTION_ASKED = 1;
+    private static final int ANSWER_GIVEN = 2;
+    private static final int SAMPLE_COUNT = 70;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void read_replaysAnswersOverSnapshot() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeSnapshot(out, SAMPLE_COUNT, 3, new long[] {1L << 5, 0});
+        writeRecord(out, QUESTION_ASKED, 64, 0);
+        writeRecord(out, ANSWER_GIVEN, 64, 1);
+        writeRecord(out, QUESTION_ASKED, 2, 0);
+        writeRecord(out, ANSWER_GIVEN, 2, 0);
+        writeRecord(out, QUESTION_ASKED, 9, 0);
+        File file = write(bytes.toByteArray());
+
+        GameJournal.State state = new GameJournal(file).read(SAMPLE_COUNT);
+
+        assertNotNull(state);
+        assertEquals(SAMPLE_COUNT, state.sampleCount);
+        assertArrayEquals(new long[] {(1L << 5) | (1L << 2), 1L}, state.askedBits);
+        assertEquals(4, state.score);
+        assertEquals(5, state.records);
+        assertEquals(file.length(), state.length);
+    }
+
+    @Test
+    public void read_dropsTornLastRecord() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeSnapshot(out, SAMPLE_COUNT, 0, new long[2]);
+        writeRecord(out, ANSWER_GIVEN, 7, 1);
+        int complete = bytes.size();
+        writeRecord(out, ANSWER_GIVEN, 8, 1);
+        byte[] journal = bytes.toByteArray();
+        byte[] torn = new byte[complete + 5];
+        System.arraycopy(journal, 0, torn, 0, torn.length);
+        File file = write(torn);
+
+        GameJournal.State state = new GameJournal(file).read(SAMPLE_COUNT);
+
+        assertNotNull(state);
+        assertArrayEquals(new long[] {1L << 7, 0}, state.askedBits);
+        assertEquals(1, state.score);
+        assertEquals(1, state.records);
+        assertEquals(complete, state.length);
+    }
+
+    @Test
+    public void read_rejectsOtherCatalogSize() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeSnapshot(out, SAMPLE_COUNT, 2, new long[2]);
+        writeRecord(out, ANSWER_GIVEN, 1, 1);
+        File file = write(bytes.toByteArray());
+
+        assertNull(new GameJournal(file).read(SAMPLE_COUNT + 1));
+    }
+
+    @Test
+    public void read_returnsNullWithoutJournal() throws Exception {
+        File file = new File(mFolder.getRoot(), "missing.journal");
+
+        assertNull(new GameJournal(file).read(SAMPLE_COUNT));
+    }
+
+    private static void writeSnapshot(DataOutputStream out, int sampleCount, int score,
+                                      long[] askedBits) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sampleCount);
+        out.writeInt(score);
+        out.writeInt(askedBits.length);
+        for (long word : askedBits) {
+            out.writeLong(word);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, int type, int position,
+                                    int scoreDelta) throws IOException {
+        out.writeInt(type);
+        out.writeInt(position);
+        out.writeInt(scoreDelta);
+    }
+
+    private File write(byte[] journal) throws IOException {
+        File file = mFolder.newFile("game.journal");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(journal);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.util.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a JSON catalog, as done when no binary catalog was built for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class CatalogParseBenchmark {
+
+    private static final byte[] SINGLE_ENTRY = ("{\"name\": \"Fur Elise\", \"id\": 1, "
+            + "\"uri\": \"asset:///fur_elise.mp3\", \"composer\": \"Ludwig van Beethoven\", "
+            + "\"albumArtID\": \"beethoven\", \"excerptDurationMs\": 20000}")
+            .getBytes(Charset.forName("UTF-8"));
+
+    @Param({"11", "1000", "100000", "1000000"})
+    public int size;
+
+    private byte[] mCatalog;
+
+    @Setup
+    public void setUp() {
+        mCatalog = SyntheticCatalog.json(size);
+    }
+
+    @Benchmark
+    public ArrayList<Sample> readAllSamples() {
+        return Sample.readAllSamples(new ByteArrayInputStream(mCatalog));
+    }
+
+    /**
+     * A single {@link Sample#readEntry(JsonReader)}, including the reader setup; independent of
+     * the catalog size.
+     */
+    @Benchmark
+    public Sample readEntry() throws IOException {
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(SINGLE_ENTRY), "UTF-8"));
+        return Sample.readEntry(reader);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating questions and removing asked samples from the remaining set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class QuestionBenchmark {
+
+    @Param({"11", "1000", "100000", "1000000"})
+    public int size;
+
+    private int[] mSampleIDs;
+    private Random mRandom;
+    private QuestionGenerator mGenerator;
+    private final Question mQuestion = new Question();
+
+    @Setup
+    public void setUp() {
+        mRandom = new Random(42);
+        mSampleIDs = SyntheticCatalog.shuffledIDs(size, mRandom);
+        mGenerator = new QuestionGenerator(mSampleIDs, mRandom);
+    }
+
+    /**
+     * One question, including dropping the previous answer from the remaining set. When the
+     * game runs out of samples a new one is started, so for small catalogs the cost of copying
+     * the pool is amortized over the game.
+     */
+    @Benchmark
+    public int nextQuestion() {
+        if (mGenerator.getRemainingCount() < 2) {
+            mGenerator = new QuestionGenerator(mSampleIDs, mRandom);
+        }
+        mGenerator.next(mQuestion);
+        return mQuestion.getAnswerSampleID();
+    }
+
+    /**
+     * A whole game, asking questions until there aren't enough samples left. Every question
+     * removes its answer from the remaining set.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int wholeGame() {
+        QuestionGenerator generator = new QuestionGenerator(mSampleIDs, mRandom);
+        Question question = new Question();
+        int checksum = 0;
+        do {
+            generator.next(question);
+            checksum += question.getAnswerSampleID();
+        } while (question.getCount() >= 2);
+        return checksum;
+    }
+}
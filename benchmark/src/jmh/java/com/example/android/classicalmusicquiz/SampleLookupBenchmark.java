@@ -0,0 +1,100 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking samples up by ID, which the quiz does for every button, answer and portrait.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class SampleLookupBenchmark {
+
+    private static final int PROBE_COUNT = 1024;
+
+    @Param({"11", "1000", "100000", "1000000"})
+    public int size;
+
+    private CatalogSource mSource;
+    private SampleIndex mIndex;
+    private final int[] mProbeIDs = new int[PROBE_COUNT];
+    private final int[] mBatchIDs = new int[Question.NUM_ANSWERS];
+    private final Sample[] mBatch = new Sample[Question.NUM_ANSWERS];
+    private int mNextProbe;
+
+    @Setup
+    public void setUp() {
+        mSource = SyntheticCatalog.source(size);
+        mIndex = new SampleIndex(mSource);
+        Random random = new Random(42);
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            mProbeIDs[i] = mSource.getSampleID(random.nextInt(size));
+        }
+        // Materialize every sample so the benchmark measures the lookup, not the first read.
+        for (int i = 0; i < mIndex.size(); i++) {
+            mIndex.getSample(i);
+        }
+    }
+
+    @Benchmark
+    public Sample getSampleByID() {
+        int probe = mNextProbe;
+        mNextProbe = (probe + 1) & (PROBE_COUNT - 1);
+        return mIndex.getSampleByID(mProbeIDs[probe]);
+    }
+
+    /**
+     * Looking up the choices of one question in a single call, as the quiz screen does.
+     */
+    @Benchmark
+    public Sample[] getSamplesByIDs() {
+        for (int i = 0; i < mBatchIDs.length; i++) {
+            int probe = mNextProbe;
+            mNextProbe = (probe + 1) & (PROBE_COUNT - 1);
+            mBatchIDs[i] = mProbeIDs[probe];
+        }
+        mIndex.getSamplesByIDs(mBatchIDs, mBatchIDs.length, mBatch);
+        return mBatch;
+    }
+
+    /**
+     * Building the index itself, which happens once per launch.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public SampleIndex buildIndex() {
+        return new SampleIndex(mSource);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Synthetic catalogs in the media.exolist.json schema. Each size always produces the same
+ * catalog, so results can be compared between runs.
+ */
+final class SyntheticCatalog {
+
+    private static final int COMPOSER_COUNT = 500;
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Generates a JSON catalog. IDs are a shuffled permutation of 0 to size - 1, like the
+     * compactly numbered catalogs shipped with the app.
+     * @param size The number of samples.
+     * @return The UTF-8 encoded catalog.
+     */
+    static byte[] json(int size) {
+        Random random = new Random(size);
+        int[] ids = shuffledIDs(size, random);
+        StringBuilder json = new StringBuilder(size * 200);
+        json.append("[\n");
+        for (int i = 0; i < size; i++) {
+            int id = ids[i];
+            int composer = random.nextInt(COMPOSER_COUNT);
+            int durationMs = 60000 + random.nextInt(600000);
+            json.append("  {\n")
+                    .append("    \"name\": \"Synthetic Piece No. ").append(id).append("\",\n")
+                    .append("    \"id\": ").append(id).append(",\n")
+                    .append("    \"uri\": \"asset:///synthetic_").append(id).append(".mp3\",\n")
+                    .append("    \"composer\": \"Composer ").append(composer).append("\",\n")
+                    .append("    \"albumArtID\": \"composer_").append(composer).append("\",\n")
+                    .append("    \"durationMs\": ").append(durationMs).append(",\n")
+                    .append("    \"excerptStartMs\": ").append(random.nextInt(durationMs - 20000))
+                    .append(",\n")
+                    .append("    \"excerptDurationMs\": 20000\n")
+                    .append(i + 1 < size ? "  },\n" : "  }\n");
+        }
+        json.append("]\n");
+        return json.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * @param size The number of samples.
+     * @return The same catalog as {@link #json(int)}, already parsed.
+     */
+    static CatalogSource source(int size) {
+        return new ListSource(Sample.readAllSamples(new ByteArrayInputStream(json(size))));
+    }
+
+    static int[] shuffledIDs(int size, Random random) {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return ids;
+    }
+
+    private static class ListSource implements CatalogSource {
+
+        private final ArrayList<Sample> mSamples;
+
+        ListSource(ArrayList<Sample> samples) {
+            mSamples = samples;
+        }
+
+        @Override
+        public int size() {
+            return mSamples.size();
+        }
+
+        @Override
+        public int getSampleID(int position) {
+            return mSamples.get(position).getSampleID();
+        }
+
+        @Override
+        public Sample readSample(int position) {
+            return mSamples.get(position);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package android.util;
+
+import java.io.Reader;
+
+/**
+ * Stand-in for the framework JsonReader when running app code off-device. The framework class
+ * was derived from Gson's reader and has the same API.
+ */
+public final class JsonReader extends com.google.gson.stream.JsonReader {
+
+    public JsonReader(Reader in) {
+        super(in);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles the samples of a media.exolist.json file into the binary catalog format read by the
+ * app's BinaryCatalog. All values are big-endian:
+ *
+ * <pre>
+ * header     magic, version, count, uniqueCount, checksum, composerCount, artCount,
+ *            recordsOffset, poolOffset, poolLength (10 ints)
+ * records    count x (id, titleRef, uriRef, composerIndex, artIndex, excerptStartMs,
+ *            excerptDurationMs, durationMs, seekIndexRef)
+ * composers  composerCount x stringRef
+ * art        artCount x stringRef
+ * pool       (unsigned short length, UTF-8 bytes) per distinct string
+ * </pre>
+ *
+ * A string ref is the offset of the string inside the pool. A ref, index or time of -1 means the
+ * value was missing from the JSON entry. The first five header ints are the catalog's metadata
+ * and can be read without mapping the rest: uniqueCount is the number of distinct sample IDs,
+ * checksum the CRC32 of everything after the header.
+ */
+public class CatalogCompiler {
+
+    public static final int MAGIC = 0x434D5143;
+    public static final int VERSION = 4;
+    public static final int HEADER_SIZE = 40;
+    public static final int RECORD_SIZE = 36;
+
+    private static final int RECORD_INTS = RECORD_SIZE / 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> mComposers = new ArrayList<>();
+    private final List<String> mArt = new ArrayList<>();
+    private final Map<String, Integer> mComposerIndices = new HashMap<>();
+    private final Map<String, Integer> mArtIndices = new HashMap<>();
+    private final Map<String, Integer> mStringRefs = new HashMap<>();
+    private final ByteArrayOutputStream mPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mPool = new DataOutputStream(mPoolBytes);
+
+
+    /**
+     * Writes the binary catalog for a list of parsed JSON entries.
+     * @param entries The sample objects, as parsed from the JSON array.
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void compile(List<Map<String, Object>> entries, OutputStream out)
+            throws IOException {
+        new CatalogCompiler().write(entries, out);
+    }
+
+    private void write(List<Map<String, Object>> entries, OutputStream out) throws IOException {
+        int count = entries.size();
+        int[] records = new int[count * RECORD_INTS];
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> entry = entries.get(i);
+            int record = i * RECORD_INTS;
+            records[record] = intValue(entry.get("id"));
+            ids.add(records[record]);
+            records[record + 1] = stringRef((String) entry.get("name"));
+            records[record + 2] = stringRef((String) entry.get("uri"));
+            records[record + 3] = tableIndex((String) entry.get("composer"), mComposers,
+                    mComposerIndices);
+            records[record + 4] = tableIndex((String) entry.get("albumArtID"), mArt, mArtIndices);
+            records[record + 5] = intValue(entry.get("excerptStartMs"));
+            records[record + 6] = intValue(entry.get("excerptDurationMs"));
+            records[record + 7] = intValue(entry.get("durationMs"));
+            records[record + 8] = stringRef((String) entry.get("seekIndex"));
+        }
+        int[] composerRefs = new int[mComposers.size()];
+        for (int i = 0; i < composerRefs.length; i++) {
+            composerRefs[i] = stringRef(mComposers.get(i));
+        }
+        int[] artRefs = new int[mArt.size()];
+        for (int i = 0; i < artRefs.length; i++) {
+            artRefs[i] = stringRef(mArt.get(i));
+        }
+        mPool.flush();
+
+        int poolOffset = HEADER_SIZE + count * RECORD_SIZE
+                + (composerRefs.length + artRefs.length) * 4;
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(poolOffset - HEADER_SIZE
+                + mPoolBytes.size());
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        for (int value : records) {
+            body.writeInt(value);
+        }
+        for (int ref : composerRefs) {
+            body.writeInt(ref);
+        }
+        for (int ref : artRefs) {
+            body.writeInt(ref);
+        }
+        mPoolBytes.writeTo(body);
+        body.flush();
+        CRC32 checksum = new CRC32();
+        checksum.update(bodyBytes.toByteArray());
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(count);
+        data.writeInt(ids.size());
+        data.writeInt((int) checksum.getValue());
+        data.writeInt(composerRefs.length);
+        data.writeInt(artRefs.length);
+        data.writeInt(HEADER_SIZE);
+        data.writeInt(poolOffset);
+        data.writeInt(mPoolBytes.size());
+        bodyBytes.writeTo(data);
+        data.flush();
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : -1;
+    }
+
+    private int tableIndex(String value, List<String> table, Map<String, Integer> indices) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = table.size();
+            table.add(value);
+            indices.put(value, index);
+        }
+        return index;
+    }
+
+    private int stringRef(String value) throws IOException {
+        if (value == null) {
+            return -1;
+        }
+        Integer ref = mStringRefs.get(value);
+        if (ref == null) {
+            byte[] bytes = value.getBytes(UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("String too long for the catalog pool: " + value);
+            }
+            ref = mPool.size();
+            mPool.writeShort(bytes.length);
+            mPool.write(bytes);
+            mStringRefs.put(value, ref);
+        }
+        return ref;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import groovy.json.JsonSlurper;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH results against a recorded baseline and fails if any benchmark got slower by
+ * more than the tolerance. Both files are JMH JSON result files; benchmarks are matched by name
+ * and parameters. Only time-per-operation modes are compared, where lower scores are better.
+ * A missing baseline fails the check unless it is explicitly allowed.
+ */
+public class CheckBenchmarksTask extends DefaultTask {
+
+    private File mResults;
+    private File mBaseline;
+    private double mTolerance = 0.10;
+    private boolean mAllowMissingBaseline;
+
+    @InputFile
+    public File getResults() {
+        return mResults;
+    }
+
+    public void setResults(File results) {
+        mResults = results;
+    }
+
+    /**
+     * @return The recorded results to compare against.
+     */
+    @Input
+    public File getBaseline() {
+        return mBaseline;
+    }
+
+    public void setBaseline(File baseline) {
+        mBaseline = baseline;
+    }
+
+    /**
+     * @return The fraction a score may grow by before it counts as a regression.
+     */
+    @Input
+    public double getTolerance() {
+        return mTolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        mTolerance = tolerance;
+    }
+
+    /**
+     * @return Whether to skip the check, rather than fail it, when there is no baseline.
+     */
+    @Input
+    public boolean getAllowMissingBaseline() {
+        return mAllowMissingBaseline;
+    }
+
+    public void setAllowMissingBaseline(boolean allowMissingBaseline) {
+        mAllowMissingBaseline = allowMissingBaseline;
+    }
+
+    @TaskAction
+    public void check() {
+        if (!mBaseline.isFile()) {
+            String message = "No benchmark baseline at " + mBaseline + ", run recordBaseline";
+            if (!mAllowMissingBaseline) {
+                throw new GradleException(message
+                        + " or pass -PallowMissingBaseline to skip the check");
+            }
+            getLogger().warn(message);
+            return;
+        }
+        Map<String, Double> baseline = readScores(mBaseline);
+        Map<String, Double> results = readScores(mResults);
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double expected = baseline.get(result.getKey());
+            if (expected == null) {
+                getLogger().lifecycle("New benchmark " + result.getKey());
+                continue;
+            }
+            double change = result.getValue() / expected - 1;
+            String line = String.format("%s: %.3f -> %.3f (%+.1f%%)",
+                    result.getKey(), expected, result.getValue(), change * 100);
+            getLogger().lifecycle(line);
+            if (change > mTolerance) {
+                regressions.add(line);
+            }
+        }
+        if (!regressions.isEmpty()) {
+            StringBuilder message = new StringBuilder("Benchmarks regressed by more than ")
+                    .append(Math.round(mTolerance * 100)).append("%:");
+            for (String regression : regressions) {
+                message.append("\n  ").append(regression);
+            }
+            throw new GradleException(message.toString());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Double> readScores(File file) {
+        List<Map<String, Object>> runs = (List<Map<String, Object>>) new JsonSlurper().parse(file);
+        Map<String, Double> scores = new HashMap<>();
+        for (Map<String, Object> run : runs) {
+            String mode = (String) run.get("mode");
+            if (!"avgt".equals(mode) && !"sample".equals(mode) && !"ss".equals(mode)) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            Map<String, Object> params = (Map<String, Object>) run.get("params");
+            if (params != null) {
+                key.append(params);
+            }
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            scores.put(key.toString(), ((Number) metric.get("score")).doubleValue());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.SourceTask;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import groovy.json.JsonSlurper;
+
+/**
+ * Compiles every *.exolist.json source into a *.exolist.bin binary catalog next to it in the
+ * output directory. The JSON files stay the authoring source, the binary ones are what the app
+ * reads at runtime.
+ */
+public class CompileCatalogTask extends SourceTask {
+
+    static final String JSON_SUFFIX = ".exolist.json";
+    static final String BINARY_SUFFIX = ".exolist.bin";
+
+    private File mOutputDir;
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return mOutputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        mOutputDir = outputDir;
+    }
+
+    @TaskAction
+    @SuppressWarnings("unchecked")
+    public void compile() throws IOException {
+        for (File json : getSource()) {
+            String name = json.getName();
+            String binaryName = name.substring(0, name.length() - JSON_SUFFIX.length())
+                    + BINARY_SUFFIX;
+            Object parsed = new JsonSlurper().parse(json, "UTF-8");
+            if (!(parsed instanceof List)) {
+                throw new GradleException(name + " must contain a JSON array of samples");
+            }
+            OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(new File(mOutputDir, binaryName)));
+            try {
+                CatalogCompiler.compile((List<Map<String, Object>>) parsed, out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
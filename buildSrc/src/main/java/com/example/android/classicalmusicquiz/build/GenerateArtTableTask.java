@@ -0,0 +1,206 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import groovy.json.JsonSlurper;
+
+/**
+ * Generates ArtTable.java, which maps every catalog position to the drawable of its composer
+ * portrait, so the app resolves art with an array read instead of Resources.getIdentifier. The
+ * catalogs are merged the way the app's SampleIndex merges them: in ascending priority, each ID
+ * at the position where it first appears, with the fields of its last appearance.
+ *
+ * <p>Every albumArtID has to name a portrait in the drawable directory, otherwise the build
+ * fails.
+ */
+public class GenerateArtTableTask extends DefaultTask {
+
+    private static final String PACKAGE = "com.example.android.classicalmusicquiz";
+    private static final String CLASS_NAME = "ArtTable";
+
+    private List<File> mAssetDirs = new ArrayList<>();
+    private File mDrawableDir;
+    private Map<String, Integer> mPriorities = new HashMap<>();
+    private File mOutputDir;
+
+    /**
+     * @return The directories that are merged into the APK's assets. They don't have to exist.
+     */
+    @InputFiles
+    public List<File> getAssetDirs() {
+        return mAssetDirs;
+    }
+
+    public void setAssetDirs(List<File> assetDirs) {
+        mAssetDirs = assetDirs;
+    }
+
+    @InputDirectory
+    public File getDrawableDir() {
+        return mDrawableDir;
+    }
+
+    public void setDrawableDir(File drawableDir) {
+        mDrawableDir = drawableDir;
+    }
+
+    /**
+     * @return The priority of each catalog, by name. Catalogs that aren't listed get 0.
+     */
+    @Input
+    public Map<String, Integer> getPriorities() {
+        return mPriorities;
+    }
+
+    public void setPriorities(Map<String, Integer> priorities) {
+        mPriorities = priorities;
+    }
+
+    /**
+     * @return The Java source root the table is generated into.
+     */
+    @OutputDirectory
+    public File getOutputDir() {
+        return mOutputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        mOutputDir = outputDir;
+    }
+
+    @TaskAction
+    @SuppressWarnings("unchecked")
+    public void generate() throws IOException {
+        Set<String> drawables = new HashSet<>();
+        for (String name : GenerateAssetManifestTask.sortedNames(mDrawableDir)) {
+            if (GenerateAssetManifestTask.hasExtension(name,
+                    GenerateAssetManifestTask.ART_EXTENSIONS)) {
+                drawables.add(name.substring(0, name.lastIndexOf('.')));
+            }
+        }
+
+        // Sample ID to albumArtID, in catalog position order.
+        Map<Integer, String> art = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (File catalog : sortedCatalogs()) {
+            Object parsed = new JsonSlurper().parse(catalog, "UTF-8");
+            if (!(parsed instanceof List)) {
+                throw new GradleException(catalog.getName()
+                        + " must contain a JSON array of samples");
+            }
+            for (Map<String, Object> sample : (List<Map<String, Object>>) parsed) {
+                int id = ((Number) sample.get("id")).intValue();
+                String albumArtID = (String) sample.get("albumArtID");
+                if (albumArtID != null && !drawables.contains(albumArtID)) {
+                    errors.add(catalog.getName() + ": sample " + id + " (" + sample.get("name")
+                            + ") has albumArtID \"" + albumArtID + "\", but there is no such "
+                            + "portrait in " + mDrawableDir);
+                }
+                art.put(id, albumArtID);
+            }
+        }
+        if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder("Missing composer art:");
+            for (String error : errors) {
+                message.append("\n  ").append(error);
+            }
+            throw new GradleException(message.toString());
+        }
+
+        File packageDir = new File(mOutputDir, PACKAGE.replace('.', '/'));
+        packageDir.mkdirs();
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(packageDir, CLASS_NAME + ".java")), "UTF-8");
+        try {
+            writer.write("package " + PACKAGE + ";\n\n");
+            writer.write("/**\n * Composer portraits by catalog position. Generated by "
+                    + getClass().getSimpleName() + ", do not edit.\n */\n");
+            writer.write("final class " + CLASS_NAME + " {\n\n");
+            writer.write("    static final int[] SAMPLE_IDS = {");
+            int i = 0;
+            for (Integer id : art.keySet()) {
+                writer.write((i++ % 12 == 0 ? "\n            " : " ") + id + ",");
+            }
+            writer.write("\n    };\n\n");
+            writer.write("    static final int[] RES_IDS = {");
+            for (String albumArtID : art.values()) {
+                writer.write("\n            "
+                        + (albumArtID != null ? "R.drawable." + albumArtID : "0") + ",");
+            }
+            writer.write("\n    };\n\n");
+            writer.write("    private " + CLASS_NAME + "() {\n    }\n}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Lists the JSON catalogs in the order the app merges them.
+     */
+    private List<File> sortedCatalogs() {
+        List<File> catalogs = new ArrayList<>();
+        for (File dir : mAssetDirs) {
+            for (String name : GenerateAssetManifestTask.sortedNames(dir)) {
+                if (name.endsWith(CompileCatalogTask.JSON_SUFFIX)) {
+                    catalogs.add(new File(dir, name));
+                }
+            }
+        }
+        Collections.sort(catalogs, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                int priorityA = priority(a);
+                int priorityB = priority(b);
+                if (priorityA != priorityB) {
+                    return priorityA < priorityB ? -1 : 1;
+                }
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return catalogs;
+    }
+
+    private int priority(File catalog) {
+        String name = catalog.getName();
+        Integer priority = mPriorities.get(
+                name.substring(0, name.length() - CompileCatalogTask.JSON_SUFFIX.length()));
+        return priority != null ? priority : 0;
+    }
+}
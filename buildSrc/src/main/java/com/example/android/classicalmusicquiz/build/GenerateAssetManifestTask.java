@@ -0,0 +1,149 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the asset manifest read by the app's AssetManifest, so the app never has to list its
+ * assets at runtime. Every line is a tab separated entry:
+ *
+ * <pre>
+ * catalog  priority  name   (a sample list, without its .exolist.json/.exolist.bin suffix)
+ * audio    file name        (an audio asset)
+ * art      drawable name    (a composer portrait)
+ * </pre>
+ *
+ * Catalogs are merged in ascending priority, so samples in a higher priority catalog replace
+ * samples with the same ID in a lower one.
+ */
+public class GenerateAssetManifestTask extends DefaultTask {
+
+    static final String[] AUDIO_EXTENSIONS = {".mp3", ".m4a", ".aac", ".ogg", ".wav"};
+    static final String[] ART_EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp"};
+
+    private List<File> mAssetDirs = new ArrayList<>();
+    private File mDrawableDir;
+    private Map<String, Integer> mPriorities = new HashMap<>();
+    private File mManifestFile;
+
+    /**
+     * @return The directories that are merged into the APK's assets. They don't have to exist.
+     */
+    @InputFiles
+    public List<File> getAssetDirs() {
+        return mAssetDirs;
+    }
+
+    public void setAssetDirs(List<File> assetDirs) {
+        mAssetDirs = assetDirs;
+    }
+
+    @InputDirectory
+    public File getDrawableDir() {
+        return mDrawableDir;
+    }
+
+    public void setDrawableDir(File drawableDir) {
+        mDrawableDir = drawableDir;
+    }
+
+    /**
+     * @return The priority of each catalog, by name. Catalogs that aren't listed get 0.
+     */
+    @Input
+    public Map<String, Integer> getPriorities() {
+        return mPriorities;
+    }
+
+    public void setPriorities(Map<String, Integer> priorities) {
+        mPriorities = priorities;
+    }
+
+    @OutputFile
+    public File getManifestFile() {
+        return mManifestFile;
+    }
+
+    public void setManifestFile(File manifestFile) {
+        mManifestFile = manifestFile;
+    }
+
+    @TaskAction
+    public void generate() throws IOException {
+        mManifestFile.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(mManifestFile), "UTF-8");
+        try {
+            List<String> assets = new ArrayList<>();
+            for (File dir : mAssetDirs) {
+                assets.addAll(Arrays.asList(sortedNames(dir)));
+            }
+            for (String name : assets) {
+                if (name.endsWith(CompileCatalogTask.JSON_SUFFIX)) {
+                    String catalog = name.substring(0,
+                            name.length() - CompileCatalogTask.JSON_SUFFIX.length());
+                    Integer priority = mPriorities.get(catalog);
+                    writer.write("catalog\t" + (priority != null ? priority : 0) + "\t"
+                            + catalog + "\n");
+                } else if (hasExtension(name, AUDIO_EXTENSIONS)) {
+                    writer.write("audio\t" + name + "\n");
+                }
+            }
+            for (String name : sortedNames(mDrawableDir)) {
+                if (hasExtension(name, ART_EXTENSIONS)) {
+                    writer.write("art\t" + name.substring(0, name.lastIndexOf('.')) + "\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    static String[] sortedNames(File dir) {
+        String[] names = dir.list();
+        if (names == null) {
+            return new String[0];
+        }
+        Arrays.sort(names);
+        return names;
+    }
+
+    static boolean hasExtension(String name, String[] extensions) {
+        for (String extension : extensions) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MPEG audio layer III frames of an MP3 file, found by walking the frame headers. Tags and
+ * any junk between frames are skipped; only frames that agree with the first frame's version,
+ * layer and sample rate are accepted, so stray sync words inside tags aren't mistaken for audio.
+ */
+public class Mp3File {
+
+    private static final int[][] BITRATES_KBPS = {
+            // MPEG-1 layer III.
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2 and MPEG-2.5 layer III.
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}};
+    private static final int[][] SAMPLE_RATES = {
+            // Indexed by the version bits: MPEG-2.5, reserved, MPEG-2, MPEG-1.
+            {11025, 12000, 8000}, null, {22050, 24000, 16000}, {44100, 48000, 32000}};
+
+    static final int VERSION_MPEG_1 = 3;
+    static final int CHANNEL_MODE_MONO = 3;
+
+    private final byte[] mData;
+    private final List<Frame> mFrames = new ArrayList<>();
+
+
+    /**
+     * A single frame: its header and where it sits in the file.
+     */
+    public static class Frame {
+        public final int header;
+        public final int offset;
+        public final int length;
+
+        Frame(int header, int offset, int length) {
+            this.header = header;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int version() {
+            return (header >>> 19) & 3;
+        }
+
+        public int sampleRate() {
+            return SAMPLE_RATES[version()][(header >>> 10) & 3];
+        }
+
+        public int samplesPerFrame() {
+            return version() == VERSION_MPEG_1 ? 1152 : 576;
+        }
+
+        public int channelMode() {
+            return (header >>> 6) & 3;
+        }
+    }
+
+    /**
+     * Parses the frames of an MP3 file.
+     * @param data The file contents.
+     * @throws IOException If the data contains no layer III frames.
+     */
+    public Mp3File(byte[] data) throws IOException {
+        mData = data;
+        int position = skipId3v2Tag(data);
+        int expected = 0;
+        while (position + 4 <= data.length) {
+            int header = readInt(data, position);
+            int length = frameLength(header);
+            boolean matches = expected == 0 || (header & 0xFFFE0C00) == expected;
+            if (length > 0 && matches && position + length <= data.length) {
+                if (expected == 0) {
+                    // Sync word, version, layer and sample rate must stay the same.
+                    expected = header & 0xFFFE0C00;
+                }
+                mFrames.add(new Frame(header, position, length));
+                position += length;
+            } else {
+                position++;
+            }
+        }
+        if (mFrames.isEmpty()) {
+            throw new IOException("No MPEG audio layer III frames found");
+        }
+    }
+
+    /**
+     * Gets the length in bytes of the frame starting with a header.
+     * @param header The four header bytes.
+     * @return The frame length, or 0 if the header isn't a valid layer III header.
+     */
+    static int frameLength(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return 0;
+        }
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 15;
+        int sampleRateIndex = (header >>> 10) & 3;
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15
+                || sampleRateIndex == 3) {
+            return 0;
+        }
+        int bitrate = BITRATES_KBPS[version == VERSION_MPEG_1 ? 0 : 1][bitrateIndex] * 1000;
+        int sampleRate = SAMPLE_RATES[version][sampleRateIndex];
+        int padding = (header >>> 9) & 1;
+        int coefficient = version == VERSION_MPEG_1 ? 144 : 72;
+        return coefficient * bitrate / sampleRate + padding;
+    }
+
+    private static int skipId3v2Tag(byte[] data) {
+        if (data.length < 10 || data[0] != 'I' || data[1] != 'D' || data[2] != '3') {
+            return 0;
+        }
+        int size = ((data[6] & 0x7F) << 21) | ((data[7] & 0x7F) << 14)
+                | ((data[8] & 0x7F) << 7) | (data[9] & 0x7F);
+        boolean hasFooter = (data[5] & 0x10) != 0;
+        return 10 + size + (hasFooter ? 10 : 0);
+    }
+
+    static int readInt(byte[] data, int position) {
+        return ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+                | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+
+    public List<Frame> getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Gets the frame at a time, rounding down to the frame that contains it.
+     * @param timeMs The time from the start of the audio.
+     * @return The index of the frame, clamped to the frame count.
+     */
+    public int frameAt(long timeMs) {
+        Frame first = mFrames.get(0);
+        long index = timeMs * first.sampleRate() / (1000L * first.samplesPerFrame());
+        return (int) Math.max(0, Math.min(index, mFrames.size()));
+    }
+
+    /**
+     * Gets the playing time of a number of frames.
+     * @param frameCount The number of frames.
+     * @return The duration in milliseconds.
+     */
+    public long durationMs(int frameCount) {
+        Frame first = mFrames.get(0);
+        return frameCount * first.samplesPerFrame() * 1000L / first.sampleRate();
+    }
+
+    /**
+     * Skips the Xing/Info or VBRI frame that encoders put in front of the audio, if there is one.
+     * @return The index of the first audio frame.
+     */
+    public int firstAudioFrame() {
+        Frame first = mFrames.get(0);
+        int tagOffset = first.offset + XingHeader.tagOffset(first.header);
+        int vbriOffset = first.offset + 4 + 32;
+        if (isTag(tagOffset, "Xing") || isTag(tagOffset, "Info") || isTag(vbriOffset, "VBRI")) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private boolean isTag(int offset, String tag) {
+        if (offset + 4 > mData.length) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (mData[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
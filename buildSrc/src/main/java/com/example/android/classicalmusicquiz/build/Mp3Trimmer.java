@@ -0,0 +1,84 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Cuts an MP3 file down to an excerpt at frame boundaries, without decoding it. The output is a
+ * fresh Xing header frame followed by the frames that cover the excerpt, so the trimmed file has
+ * an accurate duration and seek table. Tags are dropped.
+ */
+public class Mp3Trimmer {
+
+    /**
+     * The trimmed file and how long it plays.
+     */
+    public static class Result {
+        public final byte[] data;
+        public final long durationMs;
+
+        Result(byte[] data, long durationMs) {
+            this.data = data;
+            this.durationMs = durationMs;
+        }
+    }
+
+    /**
+     * Trims an MP3 file.
+     * @param data The contents of the MP3 file.
+     * @param startMs Where the excerpt starts. It is rounded down to a frame boundary.
+     * @param durationMs How long the excerpt is, or 0 or less to keep everything after startMs.
+     * @return The trimmed file.
+     * @throws IOException If the data isn't an MP3 file or the excerpt is past its end.
+     */
+    public static Result trim(byte[] data, long startMs, long durationMs) throws IOException {
+        Mp3File file = new Mp3File(data);
+        int audioStart = file.firstAudioFrame();
+        List<Mp3File.Frame> allFrames = file.getFrames();
+
+        int first = audioStart + file.frameAt(Math.max(startMs, 0));
+        int last = durationMs > 0
+                ? audioStart + file.frameAt(Math.max(startMs, 0) + durationMs)
+                : allFrames.size();
+        last = Math.min(last, allFrames.size());
+        if (first >= last) {
+            throw new IOException("Excerpt starts after the end of the audio");
+        }
+
+        List<Mp3File.Frame> frames = allFrames.subList(first, last);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(XingHeader.build(frames));
+        Mp3File.Frame firstFrame = frames.get(0);
+        Mp3File.Frame lastFrame = frames.get(frames.size() - 1);
+        out.write(data, firstFrame.offset, lastFrame.offset + lastFrame.length - firstFrame.offset);
+        return new Result(out.toByteArray(), file.durationMs(frames.size()));
+    }
+
+    /**
+     * Measures an MP3 file without changing it.
+     * @param data The contents of the MP3 file.
+     * @return The duration in milliseconds.
+     * @throws IOException If the data isn't an MP3 file.
+     */
+    public static long durationMs(byte[] data) throws IOException {
+        Mp3File file = new Mp3File(data);
+        return file.durationMs(file.getFrames().size() - file.firstAudioFrame());
+    }
+}
@@ -0,0 +1,268 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import groovy.json.JsonSlurper;
+
+/**
+ * Bundles the catalogs, audio, seek indices and composer art into a single content pack read by
+ * the app's ContentPack. All numbers are big-endian:
+ *
+ * <pre>
+ * header   magic, version, entry count, TOC length in bytes (4 ints)
+ * TOC      per entry: key (modified UTF-8, as DataOutput.writeUTF), type (byte),
+ *          offset from the start of the pack (long), length (long)
+ * data     catalogs, then audio and seek indices, then art, in TOC order
+ * </pre>
+ *
+ * Catalogs are stored as binary catalogs (see {@link CatalogCompiler}) in ascending priority, with
+ * their asset:/// URIs rewritten to pack:/// so that samples resolve inside the pack. Audio and
+ * seek indices are keyed by file name, art by drawable name.
+ */
+public class PackContentTask extends DefaultTask {
+
+    public static final int MAGIC = 0x434D5043;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public static final int TYPE_CATALOG = 1;
+    public static final int TYPE_AUDIO = 2;
+    public static final int TYPE_SEEK_INDEX = 3;
+    public static final int TYPE_ART = 4;
+
+    private static final String ASSET_SCHEME = "asset:///";
+    private static final String PACK_SCHEME = "pack:///";
+
+    private File mMediaDir;
+    private File mDrawableDir;
+    private Map<String, Integer> mPriorities = new HashMap<>();
+    private File mPackFile;
+
+    /**
+     * @return The directory with the catalogs, audio and seek indices, as written by trimMedia.
+     */
+    @InputDirectory
+    public File getMediaDir() {
+        return mMediaDir;
+    }
+
+    public void setMediaDir(File mediaDir) {
+        mMediaDir = mediaDir;
+    }
+
+    @InputDirectory
+    public File getDrawableDir() {
+        return mDrawableDir;
+    }
+
+    public void setDrawableDir(File drawableDir) {
+        mDrawableDir = drawableDir;
+    }
+
+    /**
+     * @return The priority of each catalog, by name. Catalogs that aren't listed get 0.
+     */
+    @Input
+    public Map<String, Integer> getPriorities() {
+        return mPriorities;
+    }
+
+    public void setPriorities(Map<String, Integer> priorities) {
+        mPriorities = priorities;
+    }
+
+    @OutputFile
+    public File getPackFile() {
+        return mPackFile;
+    }
+
+    public void setPackFile(File packFile) {
+        mPackFile = packFile;
+    }
+
+    @TaskAction
+    public void pack() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        entries.addAll(compileCatalogs());
+        for (String name : GenerateAssetManifestTask.sortedNames(mMediaDir)) {
+            File file = new File(mMediaDir, name);
+            if (GenerateAssetManifestTask.hasExtension(name,
+                    GenerateAssetManifestTask.AUDIO_EXTENSIONS)) {
+                entries.add(new Entry(name, TYPE_AUDIO, file));
+            } else if (name.endsWith(TrimMediaTask.SEEK_INDEX_SUFFIX)) {
+                entries.add(new Entry(name, TYPE_SEEK_INDEX, file));
+            }
+        }
+        for (String name : GenerateAssetManifestTask.sortedNames(mDrawableDir)) {
+            if (GenerateAssetManifestTask.hasExtension(name,
+                    GenerateAssetManifestTask.ART_EXTENSIONS)) {
+                entries.add(new Entry(name.substring(0, name.lastIndexOf('.')), TYPE_ART,
+                        new File(mDrawableDir, name)));
+            }
+        }
+
+        ByteArrayOutputStream toc = new ByteArrayOutputStream();
+        DataOutputStream tocOut = new DataOutputStream(toc);
+        long offset = HEADER_SIZE + tocLength(entries);
+        for (Entry entry : entries) {
+            tocOut.writeUTF(entry.key);
+            tocOut.writeByte(entry.type);
+            tocOut.writeLong(offset);
+            tocOut.writeLong(entry.length());
+            offset += entry.length();
+        }
+
+        mPackFile.getParentFile().mkdirs();
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mPackFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(toc.size());
+            toc.writeTo(out);
+            for (Entry entry : entries) {
+                entry.writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compiles every catalog in the media directory, lowest priority first.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Entry> compileCatalogs() throws IOException {
+        List<Entry> catalogs = new ArrayList<>();
+        for (String name : GenerateAssetManifestTask.sortedNames(mMediaDir)) {
+            if (!name.endsWith(CompileCatalogTask.JSON_SUFFIX)) {
+                continue;
+            }
+            Object parsed = new JsonSlurper().parse(new File(mMediaDir, name), "UTF-8");
+            if (!(parsed instanceof List)) {
+                throw new GradleException(name + " must contain a JSON array of samples");
+            }
+            List<Map<String, Object>> samples = (List<Map<String, Object>>) parsed;
+            for (Map<String, Object> sample : samples) {
+                toPackUri(sample, "uri");
+                toPackUri(sample, "seekIndex");
+            }
+            ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+            CatalogCompiler.compile(samples, catalog);
+            catalogs.add(new Entry(
+                    name.substring(0, name.length() - CompileCatalogTask.JSON_SUFFIX.length()),
+                    TYPE_CATALOG, catalog.toByteArray()));
+        }
+        Collections.sort(catalogs, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Integer.compare(priority(a.key), priority(b.key));
+            }
+        });
+        return catalogs;
+    }
+
+    private int priority(String catalog) {
+        Integer priority = mPriorities.get(catalog);
+        return priority != null ? priority : 0;
+    }
+
+    private static void toPackUri(Map<String, Object> sample, String field) {
+        Object uri = sample.get(field);
+        if (uri instanceof String && ((String) uri).startsWith(ASSET_SCHEME)) {
+            sample.put(field, PACK_SCHEME + ((String) uri).substring(ASSET_SCHEME.length()));
+        }
+    }
+
+    private static int tocLength(List<Entry> entries) throws IOException {
+        ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        DataOutputStream keysOut = new DataOutputStream(keys);
+        for (Entry entry : entries) {
+            keysOut.writeUTF(entry.key);
+        }
+        return keys.size() + entries.size() * (1 + 8 + 8);
+    }
+
+    /**
+     * A pack entry, backed by either a file or bytes built in memory.
+     */
+    private static class Entry {
+        final String key;
+        final int type;
+        final File file;
+        final byte[] bytes;
+
+        Entry(String key, int type, File file) {
+            this.key = key;
+            this.type = type;
+            this.file = file;
+            this.bytes = null;
+        }
+
+        Entry(String key, int type, byte[] bytes) {
+            this.key = key;
+            this.type = type;
+            this.file = null;
+            this.bytes = bytes;
+        }
+
+        long length() {
+            return bytes != null ? bytes.length : file.length();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if (bytes != null) {
+                out.write(bytes);
+                return;
+            }
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the seek index sidecar read by the app's SeekIndex: the byte offset of the frame
+ * playing at every multiple of a fixed interval, so that a start at any offset costs one seek
+ * instead of a scan or a bitrate estimate. All values are big-endian:
+ *
+ * <pre>
+ * magic, version, intervalMs (ints), durationUs (long), count (int), count x offset (int)
+ * </pre>
+ */
+public class SeekIndexWriter {
+
+    public static final int MAGIC = 0x434D5153;
+    public static final int VERSION = 1;
+
+    /**
+     * Writes the seek index of an MP3 file.
+     * @param file The parsed MP3 file.
+     * @param intervalMs The time between two entries.
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void write(Mp3File file, int intervalMs, OutputStream out) throws IOException {
+        List<Mp3File.Frame> frames = file.getFrames();
+        int firstAudioFrame = file.firstAudioFrame();
+        int audioFrames = frames.size() - firstAudioFrame;
+        long durationMs = file.durationMs(audioFrames);
+        int count = (int) (durationMs / intervalMs) + 1;
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(intervalMs);
+        data.writeLong(durationMs * 1000);
+        data.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            int frame = Math.min(file.frameAt((long) i * intervalMs), audioFrames - 1);
+            data.writeInt(frames.get(firstAudioFrame + frame).offset);
+        }
+        data.flush();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurper;
+
+/**
+ * Turns the media sources into assets. Every MP3 asset referenced by a *.exolist.json catalog in
+ * the media directory is cut down to its excerpt with {@link Mp3Trimmer}, and the catalog is
+ * rewritten to match: the excerpt fields of trimmed samples are dropped, since the whole file is
+ * now the excerpt, and every MP3 sample gets its measured durationMs. Each MP3 also gets a
+ * seek index sidecar, written by {@link SeekIndexWriter} and referenced by the sample's seekIndex.
+ */
+public class TrimMediaTask extends DefaultTask {
+
+    private static final String ASSET_SCHEME = "asset:///";
+    static final String SEEK_INDEX_SUFFIX = ".seek";
+
+    private File mMediaDir;
+    private boolean mTrimToExcerpts = true;
+    private int mSeekIndexIntervalMs = 500;
+    private File mOutputDir;
+
+    @InputDirectory
+    public File getMediaDir() {
+        return mMediaDir;
+    }
+
+    public void setMediaDir(File mediaDir) {
+        mMediaDir = mediaDir;
+    }
+
+    /**
+     * @return false to copy the MP3s whole, e.g. when excerpts are picked at random at runtime.
+     */
+    @Input
+    public boolean getTrimToExcerpts() {
+        return mTrimToExcerpts;
+    }
+
+    public void setTrimToExcerpts(boolean trimToExcerpts) {
+        mTrimToExcerpts = trimToExcerpts;
+    }
+
+    /**
+     * @return The time between two entries of the seek indices.
+     */
+    @Input
+    public int getSeekIndexIntervalMs() {
+        return mSeekIndexIntervalMs;
+    }
+
+    public void setSeekIndexIntervalMs(int seekIndexIntervalMs) {
+        mSeekIndexIntervalMs = seekIndexIntervalMs;
+    }
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return mOutputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        mOutputDir = outputDir;
+    }
+
+    @TaskAction
+    @SuppressWarnings("unchecked")
+    public void trim() throws IOException {
+        File[] catalogs = mMediaDir.listFiles();
+        if (catalogs == null) {
+            return;
+        }
+        for (File catalog : catalogs) {
+            if (!catalog.getName().endsWith(CompileCatalogTask.JSON_SUFFIX)) {
+                continue;
+            }
+            Object parsed = new JsonSlurper().parse(catalog, "UTF-8");
+            if (!(parsed instanceof List)) {
+                throw new GradleException(catalog.getName()
+                        + " must contain a JSON array of samples");
+            }
+            List<Map<String, Object>> entries = (List<Map<String, Object>>) parsed;
+            for (Map<String, Object> entry : entries) {
+                processEntry(entry);
+            }
+            Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(new File(mOutputDir, catalog.getName())), "UTF-8");
+            try {
+                writer.write(JsonOutput.prettyPrint(JsonOutput.toJson(entries)));
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private void processEntry(Map<String, Object> entry) throws IOException {
+        Object uri = entry.get("uri");
+        if (!(uri instanceof String) || !((String) uri).startsWith(ASSET_SCHEME)) {
+            return;
+        }
+        String name = ((String) uri).substring(ASSET_SCHEME.length());
+        File source = new File(mMediaDir, name);
+        if (!source.isFile()) {
+            getLogger().warn("Missing media for sample " + entry.get("id") + ": " + name);
+            return;
+        }
+        File target = new File(mOutputDir, name);
+        target.getParentFile().mkdirs();
+        byte[] data = Files.readAllBytes(source.toPath());
+
+        if (!name.endsWith(".mp3")) {
+            Files.write(target.toPath(), data);
+            return;
+        }
+
+        long excerptStartMs = longValue(entry.get("excerptStartMs"));
+        long excerptDurationMs = longValue(entry.get("excerptDurationMs"));
+        if (mTrimToExcerpts && (excerptStartMs > 0 || excerptDurationMs > 0)) {
+            Mp3Trimmer.Result result = Mp3Trimmer.trim(data, excerptStartMs, excerptDurationMs);
+            data = result.data;
+            entry.remove("excerptStartMs");
+            entry.remove("excerptDurationMs");
+            entry.put("durationMs", result.durationMs);
+        } else {
+            entry.put("durationMs", Mp3Trimmer.durationMs(data));
+        }
+        Files.write(target.toPath(), data);
+
+        OutputStream seekIndex = new FileOutputStream(new File(mOutputDir,
+                name + SEEK_INDEX_SUFFIX));
+        try {
+            SeekIndexWriter.write(new Mp3File(data), mSeekIndexIntervalMs, seekIndex);
+        } finally {
+            seekIndex.close();
+        }
+        entry.put("seekIndex", ASSET_SCHEME + name + SEEK_INDEX_SUFFIX);
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.build;
+
+import java.util.List;
+
+/**
+ * Builds a Xing header frame: a silent frame placed before the audio that carries the frame
+ * count, the byte count and a 100 entry table of contents mapping percent of duration to percent
+ * of bytes. Players use it to compute durations and seek positions without scanning the file.
+ */
+public class XingHeader {
+
+    private static final int FLAG_FRAMES = 0x1;
+    private static final int FLAG_BYTES = 0x2;
+    private static final int FLAG_TOC = 0x4;
+    private static final int TAG_LENGTH = 4 + 4 + 4 + 4 + 100;
+
+    /**
+     * Gets where the Xing tag starts in a frame: after the header and the side information.
+     * @param header The frame header.
+     * @return The offset from the start of the frame.
+     */
+    static int tagOffset(int header) {
+        boolean mpeg1 = ((header >>> 19) & 3) == Mp3File.VERSION_MPEG_1;
+        boolean mono = ((header >>> 6) & 3) == Mp3File.CHANNEL_MODE_MONO;
+        if (mpeg1) {
+            return mono ? 4 + 17 : 4 + 32;
+        }
+        return mono ? 4 + 9 : 4 + 17;
+    }
+
+    /**
+     * Builds the header frame for a run of audio frames.
+     * @param frames The audio frames that will follow the header frame.
+     * @return The header frame.
+     */
+    public static byte[] build(List<Mp3File.Frame> frames) {
+        int template = frames.get(0).header;
+        int tagOffset = tagOffset(template);
+
+        // Keep version, sample rate and channels, drop the CRC and padding, and use the lowest
+        // bitrate whose frame is large enough for the tag.
+        int header = (template & 0xFFFE0FFF & ~(1 << 9)) | 0x10000;
+        int length = 0;
+        for (int bitrateIndex = 1; bitrateIndex < 15; bitrateIndex++) {
+            header = (header & 0xFFFF0FFF) | (bitrateIndex << 12);
+            length = Mp3File.frameLength(header);
+            if (length >= tagOffset + TAG_LENGTH) {
+                break;
+            }
+        }
+
+        int audioBytes = 0;
+        for (Mp3File.Frame frame : frames) {
+            audioBytes += frame.length;
+        }
+        int totalBytes = length + audioBytes;
+
+        byte[] frame = new byte[length];
+        writeInt(frame, 0, header);
+        int position = tagOffset;
+        frame[position++] = 'X';
+        frame[position++] = 'i';
+        frame[position++] = 'n';
+        frame[position++] = 'g';
+        writeInt(frame, position, FLAG_FRAMES | FLAG_BYTES | FLAG_TOC);
+        writeInt(frame, position + 4, frames.size());
+        writeInt(frame, position + 8, totalBytes);
+        position += 12;
+
+        // Entry i is the byte position, in 256ths of the file, where i percent of the time is.
+        int frameCount = frames.size();
+        int frameIndex = 0;
+        long bytesBefore = length;
+        for (int i = 0; i < 100; i++) {
+            int targetFrame = (int) ((long) i * frameCount / 100);
+            while (frameIndex < targetFrame) {
+                bytesBefore += frames.get(frameIndex).length;
+                frameIndex++;
+            }
+            frame[position++] = (byte) Math.min(255, bytesBefore * 256 / totalBytes);
+        }
+        return frame;
+    }
+
+    private static void writeInt(byte[] data, int position, int value) {
+        data[position] = (byte) (value >>> 24);
+        data[position + 1] = (byte) (value >>> 16);
+        data[position + 2] = (byte) (value >>> 8);
+        data[position + 3] = (byte) value;
+    }
+}